@@ -19,7 +19,8 @@ public interface Agent {
                 @JsonSubTypes.Type(value = Event.UserText.class, name = "USR"),
                 @JsonSubTypes.Type(value = Event.FuncCall.class, name = "FC"),
                 @JsonSubTypes.Type(value = Event.FuncResult.class, name = "FR"),
-                @JsonSubTypes.Type(value = Event.Thinking.class, name = "TH")
+                @JsonSubTypes.Type(value = Event.Thinking.class, name = "TH"),
+                @JsonSubTypes.Type(value = Event.Exhausted.class, name = "EX")
         })
         @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
         public interface Payload {
@@ -51,7 +52,17 @@ public interface Agent {
         public record FuncResult(FuncCall call, String result) implements Payload {
         }
 
-        public record Structured<T>(T data) implements Payload {
+        /**
+         * Ends a stream which exhausted a limit of its budget, {@code used} is in the unit of
+         * the limit (calls, tokens or milliseconds).
+         */
+        public record Exhausted(Budget.Limit limit, long used, long max) implements Payload {
+        }
+
+        public record Structured<T>(T data, boolean isLast) implements Payload {
+            public Structured(T data) {
+                this(data, true);
+            }
         }
     }
 }
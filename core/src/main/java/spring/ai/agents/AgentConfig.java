@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +19,7 @@ import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.chat.prompt.SystemPromptTemplate;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.util.FileCopyUtils;
@@ -25,6 +27,8 @@ import org.springframework.util.FileCopyUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import spring.ai.agents.Agent.Event.FuncResult;
+import spring.ai.parser.StreamingJsonParser.Limits;
+import spring.ai.parser.TagParser.Tag;
 import spring.ai.schema.SchemaFormat;
 
 @ConfigurationProperties(prefix = "agents")
@@ -44,7 +48,25 @@ public record AgentConfig(ToolCallConfig tools, Map<String, Resource> prompts) {
         // Prompt template for tool schema injection
         Resource toolsPrompt,
         // Message roles configuration
-        Roles roles
+        Roles roles,
+        // Limits of JSON candidates buffered while parsing tool calls and structured output
+        Limits jsonLimits,
+        // If true, JSON is parsed leniently: single quotes, unquoted names, comments, trailing commas, Python literals
+        Boolean lenientJson,
+        // Tags which split the model output into thinking, text and tool call blocks, e.g. <think>, <reasoning>, <tool_call>
+        List<Tag> tags,
+        // Metadata key of the assistant message with native reasoning (e.g. reasoningContent for the reasoning_content
+        // delta of vLLM or llama.cpp), if set, reasoning is taken from it and the text is not scanned for tags
+        String reasoningField,
+        // Max tool calls of one model turn which run concurrently, their results go back in a single prompt.
+        // With 1 the turn stops at the first tool call
+        Integer maxParallelToolCalls,
+        // If true, the model may answer with a plan: tool calls with ids, where ${id} in an argument is the result of
+        // that call. The plan runs without the model, which gets all results when it finishes
+        Boolean toolPlans,
+        // Limits of a stream including its tool turns: max tool calls, max total tokens and timeout.
+        // With max tokens a turn is not cut at the first tool call, the usage comes with its last chunk
+        Budget budget
     ) {
 
         public record Roles(
@@ -64,15 +86,28 @@ public record AgentConfig(ToolCallConfig tools, Map<String, Resource> prompts) {
             }
         }
 
+        @ConstructorBinding
         public ToolCallConfig {
             provider = provider != null ? provider : ToolCallHandler.CUSTOM;
             schemaFormat = schemaFormat != null ? schemaFormat : SchemaFormat.YAML;
             roles = roles != null ? roles : provider == ToolCallHandler.CUSTOM ? Roles.DEFAULT : new Roles(Roles.DEFAULT.prompt(), MessageType.TOOL, provider);
-            toolsPrompt = toolsPrompt != null ? toolsPrompt : new ClassPathResource("agents/prompts/default-tools.md");
+            toolPlans = toolPlans != null ? toolPlans : false;
+            budget = budget != null ? budget : Budget.UNLIMITED;
+            toolsPrompt = toolsPrompt != null ? toolsPrompt
+                : new ClassPathResource(toolPlans ? "agents/prompts/plan-tools.md" : "agents/prompts/default-tools.md");
             injectSchema = injectSchema != null ? injectSchema : true;
+            jsonLimits = jsonLimits != null ? jsonLimits : Limits.DEFAULT;
+            lenientJson = lenientJson != null ? lenientJson : false;
+            tags = tags != null && !tags.isEmpty() ? List.copyOf(tags) : List.of(Tag.THINK);
+            reasoningField = reasoningField != null && !reasoningField.isBlank() ? reasoningField : null;
+            maxParallelToolCalls = maxParallelToolCalls != null && maxParallelToolCalls > 0 ? maxParallelToolCalls : 1;
         }
 
-        public static final ToolCallConfig DEFAULT = new ToolCallConfig(null,null, null, null, null);
+        public ToolCallConfig(ToolCallHandler provider, SchemaFormat schemaFormat, Boolean injectSchema, Resource toolsPrompt, Roles roles) {
+            this(provider, schemaFormat, injectSchema, toolsPrompt, roles, null, null, null, null, null, null, null);
+        }
+
+        public static final ToolCallConfig DEFAULT = new ToolCallConfig(null,null, null, null, null, null, null, null, null, null, null, null);
 
         public Message toolResponse(ChatResponse chatResponse) {
             if (MessageType.USER != this.roles.response()) {
@@ -93,6 +128,20 @@ public record AgentConfig(ToolCallConfig tools, Map<String, Resource> prompts) {
             return List.of(toolCallMessage, toolResponseMessage);
         }
 
+        /**
+         * Returns the calls of a turn in one assistant message, followed by all of their results.
+         */
+        public List<Message> toolResponse(List<FuncResult> funcs, ObjectMapper mapper) {
+            var calls = new ArrayList<Message>(funcs.size());
+            var responses = new ArrayList<Message>(funcs.size());
+            for (var func : funcs) {
+                var messages = toolResponse(func, mapper);
+                calls.add(messages.get(0));
+                responses.add(messages.get(1));
+            }
+            return List.of(calls.stream().reduce(Utils::join).orElseThrow(), responses.stream().reduce(Utils::join).orElseThrow());
+        }
+
         public Message toolsPrompt(String toolSchema) {
             if (MessageType.USER != this.roles.prompt()) {
                 return new SystemPromptTemplate(toolsPrompt)
@@ -106,6 +155,13 @@ public record AgentConfig(ToolCallConfig tools, Map<String, Resource> prompts) {
         public boolean isProviderEngine() {
             return ToolCallHandler.CUSTOM != provider;
         }
+
+        /**
+         * Returns true if a turn may have several tool calls, false if it stops at the first.
+         */
+        public boolean isMultipleToolCalls() {
+            return maxParallelToolCalls > 1 || toolPlans;
+        }
     }
 
     public enum ToolCallHandler {
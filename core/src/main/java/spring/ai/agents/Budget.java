@@ -0,0 +1,25 @@
+package spring.ai.agents;
+
+import java.time.Duration;
+
+/**
+ * Limits of a single agent stream including all of its tool turns, null is unlimited.
+ * The calls of a turn over the tool calls left don't run, once they are used up the model
+ * answers in a turn without tools. Tokens are checked when a turn ends, so a turn may go
+ * over them once.
+ */
+public record Budget(
+    // tool calls of all turns
+    Integer maxToolCalls,
+    // total tokens of all turns, from the usage of the last chunk of each turn
+    Long maxTokens,
+    // wall clock time from the subscription
+    Duration timeout
+) {
+
+    public static final Budget UNLIMITED = new Budget(null, null, null);
+
+    public enum Limit {
+        TOOL_CALLS, TOKENS, TIME
+    }
+}
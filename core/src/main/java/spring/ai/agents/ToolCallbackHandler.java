@@ -23,6 +23,12 @@ public interface ToolCallbackHandler {
      * Returns tool messages which are appended to the prompt after tool call
      */
     List<Message> getToolMessages(FuncResult func);
+    /**
+     * Returns tool messages which are appended to the prompt after all tool calls of a turn
+     */
+    default List<Message> getToolMessages(List<FuncResult> funcs) {
+        return funcs.stream().flatMap(func -> getToolMessages(func).stream()).toList();
+    }
     /**
      * Adds tool schema to the prompt
      */
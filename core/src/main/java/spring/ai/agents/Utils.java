@@ -2,8 +2,11 @@ package spring.ai.agents;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.springframework.ai.chat.messages.AssistantMessage;
@@ -68,7 +71,21 @@ public final class Utils {
             chatResponse.getMetadata().getUsage().getTotalTokens() > 0;
     }
 
+    // rendered tool definitions per mapper, the definitions of a tool class are shared by all of its instances
+    private static final Map<ObjectMapper, Map<ToolDefinitionKey, String>> toolDefinitions =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    private record ToolDefinitionKey(ToolDefinition toolDefinition, SchemaFormat format) {}
+
+    /**
+     * Renders the definition in the format, the result is cached by mapper, definition and format.
+     */
     public static String buildToolDefinition(ToolDefinition toolDefinition, ObjectMapper mapper, SchemaFormat format) {
+        return toolDefinitions.computeIfAbsent(mapper, m -> new ConcurrentHashMap<>())
+            .computeIfAbsent(new ToolDefinitionKey(toolDefinition, format), key -> renderToolDefinition(toolDefinition, mapper, format));
+    }
+
+    private static String renderToolDefinition(ToolDefinition toolDefinition, ObjectMapper mapper, SchemaFormat format) {
         var inputSchema = toolDefinition.inputSchema();
         var formatted = " {\n   \"type\": \"function\",\n   \"name\": \"%s\",\n   \"description\": \"%s\",\n   \"parameters\": %s\n }";
         if (format == SchemaFormat.YAML) {
@@ -120,7 +137,11 @@ public final class Utils {
 
     public static Message join(Message lastMessage, Message nextMessage) {
         if (lastMessage instanceof AssistantMessage last && nextMessage instanceof AssistantMessage next) {
-            return new AssistantMessage(String.join(DELIMITER, last.getText(), next.getText()), next.getMetadata(), next.getToolCalls());
+            var toolCalls = new ArrayList<AssistantMessage.ToolCall>(last.getToolCalls());
+            toolCalls.addAll(next.getToolCalls());
+            var text = last.getText() == null ? next.getText()
+                : next.getText() == null ? last.getText() : String.join(DELIMITER, last.getText(), next.getText());
+            return new AssistantMessage(text, next.getMetadata(), toolCalls);
         } else if (lastMessage instanceof ToolResponseMessage last && nextMessage instanceof ToolResponseMessage next) {
             var toolResponses = new ArrayList<ToolResponse>(last.getResponses());
             toolResponses.addAll(next.getResponses());
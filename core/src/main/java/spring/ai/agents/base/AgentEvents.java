@@ -0,0 +1,120 @@
+package spring.ai.agents.base;
+
+import java.util.function.Supplier;
+
+import org.springframework.ai.chat.model.ChatResponse;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import spring.ai.agents.Utils;
+import spring.ai.agents.Agent.Event.FuncCall;
+
+/**
+ * JDK Flight Recorder events of the agent streams. They are created and committed only
+ * while a recording enables them, so they cost a check per chunk otherwise. Like the tool
+ * call event, they are disabled unless the recording settings enable them.
+ */
+public final class AgentEvents {
+
+    private AgentEvents() {
+        // Prevent instantiation
+    }
+
+    @Name("spring.ai.Chunk")
+    @Label("Chunk Received")
+    @Description("A chunk of a model response received by an agent")
+    @Category({"Spring AI", "Agent"})
+    @StackTrace(false)
+    @Enabled(false)
+    public static class ChunkEvent extends Event {
+        @Label("Model")
+        String model;
+
+        @Label("Text Length")
+        int textLength;
+
+        @Label("Tool Calls")
+        int toolCalls;
+
+        @Label("Last")
+        boolean last;
+    }
+
+    @Name("spring.ai.Parse")
+    @Label("Parse Chunk")
+    @Description("A parser reading a chunk, e.g. think tags, tool call or structured output JSON")
+    @Category({"Spring AI", "Agent"})
+    @StackTrace(false)
+    @Enabled(false)
+    public static class ParseEvent extends Event {
+        @Label("Parser")
+        String parser;
+    }
+
+    @Name("spring.ai.FuncCall")
+    @Label("Tool Call Detected")
+    @Description("A tool call found in a model response")
+    @Category({"Spring AI", "Agent"})
+    @StackTrace(false)
+    @Enabled(false)
+    public static class FuncCallEvent extends Event {
+        @Label("Id")
+        String id;
+
+        @Label("Tool")
+        String name;
+    }
+
+    public static void chunkReceived(ChatResponse response) {
+        var event = new ChunkEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        if (event.shouldCommit()) {
+            event.model = response.getMetadata().getModel();
+            event.textLength = Utils.getText(response).length();
+            event.toolCalls = response.hasToolCalls()
+                ? response.getResults().stream().mapToInt(g -> g.getOutput().getToolCalls().size()).sum()
+                : 0;
+            event.last = Utils.isLastChunk(response);
+            event.commit();
+        }
+    }
+
+    /**
+     * Runs the parser of a chunk in a {@link ParseEvent}.
+     */
+    public static <T> T parse(String parser, Supplier<T> parse) {
+        var event = new ParseEvent();
+        if (!event.isEnabled()) {
+            return parse.get();
+        }
+        event.begin();
+        try {
+            return parse.get();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.parser = parser;
+                event.commit();
+            }
+        }
+    }
+
+    public static void funcCallDetected(FuncCall call) {
+        var event = new FuncCallEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        if (event.shouldCommit()) {
+            event.id = call.id();
+            event.name = call.name();
+            event.commit();
+        }
+    }
+}
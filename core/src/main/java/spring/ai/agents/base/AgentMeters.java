@@ -0,0 +1,250 @@
+package spring.ai.agents.base;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.util.StringUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Budget;
+import spring.ai.parser.ParserMetrics;
+import spring.ai.tools.ToolMetrics;
+
+/**
+ * Micrometer meters of the streams of an agent, tagged by the agent and the model:
+ * <ul>
+ * <li>{@code agent.ttft}, {@code agent.inter.token}: time to the first chunk of a model turn, and between its chunks
+ * <li>{@code agent.tokens.per.second}: completion tokens of a turn by the time from its first to its last chunk
+ * <li>{@code agent.parser.cpu}: CPU time of a parser per chunk, tagged by {@code parser} (think, reasoning, tool-call, json)
+ * <li>{@code agent.tool.calls}: latency of the tool calls, tagged by {@code tool} and {@code outcome}
+ * <li>{@code agent.tool.errors}: failed tool calls, tagged by {@code tool} and {@code exception}
+ * <li>{@code agent.tool.loop.depth}: tool turns of a stream, the turns after the first one
+ * </ul>
+ * The process wide counters of {@link AgentMetrics}, {@link ToolMetrics} and {@link ParserMetrics}
+ * are bound to the registry without tags of an agent.
+ */
+public class AgentMeters {
+
+    public static final String UNKNOWN_MODEL = "unknown";
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+
+    private final MeterRegistry registry;
+    private final String agent;
+    // the model of the last response, for parsers run after the stream, e.g. of structured output
+    private volatile String lastModel = UNKNOWN_MODEL;
+    // model -> parser -> timer of the parsers run after the stream
+    private final Map<String, Map<String, Timer>> outputParsers = new ConcurrentHashMap<>();
+
+    public AgentMeters(MeterRegistry registry, String agent) {
+        this.registry = registry;
+        this.agent = agent;
+        bindProcessMetrics(registry);
+    }
+
+    // registering a counter again returns the one which is registered
+    private static void bindProcessMetrics(MeterRegistry registry) {
+        for (var limit : Budget.Limit.values()) {
+            counter(registry, "agent.budgets.exhausted", () -> AgentMetrics.exhaustedBudgets(limit), "limit", limit.name().toLowerCase());
+        }
+        counter(registry, "agent.tool.runs", AgentMetrics::toolCalls);
+        counter(registry, "agent.tokens", AgentMetrics::tokens);
+        counter(registry, "agent.response.cache", AgentMetrics::responseCacheHits, "result", "hit");
+        counter(registry, "agent.response.cache", AgentMetrics::responseCacheMisses, "result", "miss");
+        counter(registry, "agent.response.cache.evictions", AgentMetrics::responseCacheEvictions);
+        counter(registry, "agent.prompts.coalesced", AgentMetrics::coalescedPrompts);
+        counter(registry, "tool.result.cache", ToolMetrics::cacheHits, "result", "hit");
+        counter(registry, "tool.result.cache", ToolMetrics::cacheMisses, "result", "miss");
+        counter(registry, "tool.result.cache.evictions", ToolMetrics::cacheEvictions);
+        for (var limit : ParserMetrics.Limit.values()) {
+            counter(registry, "parser.candidates.aborted", () -> ParserMetrics.abortedCandidates(limit), "limit", limit.name().toLowerCase());
+        }
+        counter(registry, "parser.bytes", ParserMetrics::parsedBytes);
+    }
+
+    private static void counter(MeterRegistry registry, String name, LongSupplier count, String... tags) {
+        FunctionCounter.builder(name, count, c -> c.getAsLong())
+            .tags(tags)
+            .register(registry);
+    }
+
+    /**
+     * Returns the recorder of a new stream of the prompt.
+     */
+    public Recorder recorder(Prompt prompt) {
+        var options = prompt.getOptions();
+        var model = options != null && StringUtils.hasText(options.getModel()) ? options.getModel() : lastModel;
+        return new Recorder(this, model);
+    }
+
+    /**
+     * Runs the parser of a chunk outside of a stream, e.g. of structured output.
+     */
+    public <T> T parse(String parser, Supplier<T> parse) {
+        var model = lastModel;
+        var timer = outputParsers.computeIfAbsent(model, m -> new ConcurrentHashMap<>())
+            .computeIfAbsent(parser, p -> timer("agent.parser.cpu", model, "parser", p));
+        return time(timer, () -> AgentEvents.parse(parser, parse));
+    }
+
+    private Timer timer(String name, String model, String... tags) {
+        return Timer.builder(name)
+            .tags(Tags.of("agent", agent, "model", model).and(tags))
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    private DistributionSummary summary(String name, String model) {
+        return DistributionSummary.builder(name)
+            .tags("agent", agent, "model", model)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    private static <T> T time(Timer timer, Supplier<T> parse) {
+        var start = cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+        try {
+            return parse.get();
+        } finally {
+            var end = cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+            timer.record(end - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the turns of a stream, a stream runs its turns one after another.
+     */
+    public static class Recorder {
+
+        /**
+         * Recorder of a stream without meters.
+         */
+        public static final Recorder NONE = new Recorder(null, UNKNOWN_MODEL);
+
+        private final AgentMeters meters;
+        private volatile String model;
+        private int turns = 0;
+        private long turnStart;
+        private long firstChunk;
+        private long lastChunk;
+        // resolved for the model, which is known with the first response
+        private String metersModel;
+        private Timer ttft;
+        private Timer interToken;
+        // parser -> timer, tool -> meters, the tool calls of a turn run in parallel
+        private final Map<String, Timer> parsers = new ConcurrentHashMap<>();
+        private final Map<String, ToolMeters> tools = new ConcurrentHashMap<>();
+
+        private Recorder(AgentMeters meters, String model) {
+            this.meters = meters;
+            this.model = model;
+        }
+
+        public void turnStarted() {
+            if (meters == null) {
+                return;
+            }
+            turns++;
+            turnStart = System.nanoTime();
+            firstChunk = 0;
+        }
+
+        public void chunk(ChatResponse response) {
+            if (meters == null) {
+                return;
+            }
+            var now = System.nanoTime();
+            var responseModel = response.getMetadata().getModel();
+            if (StringUtils.hasText(responseModel)) {
+                model = responseModel;
+                meters.lastModel = responseModel;
+            }
+            if (!model.equals(metersModel)) {
+                metersModel = model;
+                ttft = meters.timer("agent.ttft", model);
+                interToken = meters.timer("agent.inter.token", model);
+                parsers.clear();
+                tools.clear();
+            }
+            if (firstChunk == 0) {
+                firstChunk = now;
+                ttft.record(now - turnStart, TimeUnit.NANOSECONDS);
+            } else {
+                interToken.record(now - lastChunk, TimeUnit.NANOSECONDS);
+            }
+            lastChunk = now;
+            var usage = response.getMetadata().getUsage();
+            if (usage != null && usage.getCompletionTokens() != null && usage.getCompletionTokens() > 0) {
+                var generation = Duration.ofNanos(now - (now > firstChunk ? firstChunk : turnStart));
+                if (!generation.isZero()) {
+                    meters.summary("agent.tokens.per.second", model)
+                        .record(usage.getCompletionTokens() * 1e9 / generation.toNanos());
+                }
+            }
+        }
+
+        /**
+         * Runs the parser of a chunk and records its CPU time, and its {@link AgentEvents.ParseEvent}.
+         */
+        public <T> T parse(String parser, Supplier<T> parse) {
+            if (meters == null) {
+                return AgentEvents.parse(parser, parse);
+            }
+            var timer = parsers.computeIfAbsent(parser, p -> meters.timer("agent.parser.cpu", model, "parser", p));
+            return time(timer, () -> AgentEvents.parse(parser, parse));
+        }
+
+        /**
+         * Records the latency of the call, or its error.
+         */
+        public Mono<String> tool(String name, Mono<String> call) {
+            if (meters == null) {
+                return call;
+            }
+            return Mono.defer(() -> {
+                var tool = tools.computeIfAbsent(name, this::toolMeters);
+                var sample = Timer.start(meters.registry);
+                return call
+                    .doOnSuccess(result -> sample.stop(tool.success()))
+                    .doOnError(e -> {
+                        sample.stop(tool.error());
+                        tool.errors().computeIfAbsent(e.getClass(), type -> meters.registry.counter("agent.tool.errors",
+                            Tags.of("agent", meters.agent, "model", tool.model(), "tool", name, "exception", type.getSimpleName())))
+                            .increment();
+                    });
+            });
+        }
+
+        private ToolMeters toolMeters(String name) {
+            var model = this.model;
+            return new ToolMeters(model,
+                meters.timer("agent.tool.calls", model, "tool", name, "outcome", "success"),
+                meters.timer("agent.tool.calls", model, "tool", name, "outcome", "error"),
+                new ConcurrentHashMap<>());
+        }
+
+        public void finished() {
+            if (meters == null || turns == 0) {
+                return;
+            }
+            meters.summary("agent.tool.loop.depth", model).record(turns - 1);
+        }
+
+        private record ToolMeters(String model, Timer success, Timer error, Map<Class<?>, Counter> errors) {}
+    }
+}
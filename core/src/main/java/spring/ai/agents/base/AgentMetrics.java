@@ -0,0 +1,105 @@
+package spring.ai.agents.base;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import spring.ai.agents.Budget.Limit;
+
+/**
+ * Process wide counters of the agent streams.
+ */
+public final class AgentMetrics {
+
+    private static final LongAdder[] exhaustedBudgets = {
+        new LongAdder(), new LongAdder(), new LongAdder()
+    };
+
+    private static final LongAdder toolCalls = new LongAdder();
+    private static final LongAdder tokens = new LongAdder();
+    private static final LongAdder responseCacheHits = new LongAdder();
+    private static final LongAdder responseCacheMisses = new LongAdder();
+    private static final LongAdder responseCacheEvictions = new LongAdder();
+    private static final LongAdder coalescedPrompts = new LongAdder();
+
+    private AgentMetrics() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Returns the number of streams which were ended because they exhausted the limit of their budget.
+     */
+    public static long exhaustedBudgets(Limit limit) {
+        return exhaustedBudgets[limit.ordinal()].sum();
+    }
+
+    public static long exhaustedBudgets() {
+        var total = 0L;
+        for (var counter : exhaustedBudgets) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of tool calls which were run by agent streams.
+     */
+    public static long toolCalls() {
+        return toolCalls.sum();
+    }
+
+    /**
+     * Returns the total tokens reported by the usage of model responses.
+     */
+    public static long tokens() {
+        return tokens.sum();
+    }
+
+    /**
+     * Returns the number of model responses which were replayed from a {@link ResponseCache}.
+     */
+    public static long responseCacheHits() {
+        return responseCacheHits.sum();
+    }
+
+    public static long responseCacheMisses() {
+        return responseCacheMisses.sum();
+    }
+
+    public static long responseCacheEvictions() {
+        return responseCacheEvictions.sum();
+    }
+
+    /**
+     * Returns the number of prompts which joined the model response of an identical prompt in flight.
+     */
+    public static long coalescedPrompts() {
+        return coalescedPrompts.sum();
+    }
+
+    static void budgetExhausted(Limit limit) {
+        exhaustedBudgets[limit.ordinal()].increment();
+    }
+
+    static void toolCallsRun(int count) {
+        toolCalls.add(count);
+    }
+
+    static void tokensUsed(long count) {
+        tokens.add(count);
+    }
+
+    static void responseCacheHit() {
+        responseCacheHits.increment();
+    }
+
+    static void responseCacheMiss() {
+        responseCacheMisses.increment();
+    }
+
+    static void responseCacheEviction() {
+        responseCacheEvictions.increment();
+    }
+
+    static void promptCoalesced() {
+        coalescedPrompts.increment();
+    }
+}
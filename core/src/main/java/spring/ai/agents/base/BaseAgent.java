@@ -1,42 +1,83 @@
 package spring.ai.agents.base;
 
+import java.io.Writer;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
 import spring.ai.agents.Agent;
+import spring.ai.agents.Budget;
+import spring.ai.agents.Budget.Limit;
+import spring.ai.agents.ToolCallParser;
 import spring.ai.agents.ToolCallbackHandler;
 import spring.ai.agents.Utils;
+import spring.ai.agents.Agent.Event.Exhausted;
 import spring.ai.agents.Agent.Event.FuncResult;
 import spring.ai.agents.Agent.Event.Payload;
 import spring.ai.agents.Agent.Event.Structured;
 import spring.ai.agents.Agent.Event.Text;
 import spring.ai.agents.AgentConfig.ToolCallConfig;
+import spring.ai.agents.base.AgentMeters.Recorder;
 import spring.ai.parser.StreamingJsonParser;
-import spring.ai.parser.ThinkParser;
+import spring.ai.parser.StreamingJsonParser.Limits;
+import spring.ai.parser.TagParser;
+import spring.ai.schema.SchemaFormat;
 
 public class BaseAgent implements Agent {
 
     private final ChatClient chatClient;
     private final ObjectMapper mapper;
-    private final ThinkParser thinkParser = new ThinkParser();
+    // compiled once, every stream parses with its own copy
+    private final TagParser tagParser;
+    // the state of toPayload(ChatResponse), shared by its callers
+    private final TagParser payloadParser;
+    // null if reasoning is marked by tags in the text
+    private final String reasoningField;
     private final boolean injectSchema;
+    private final Limits jsonLimits;
+    private final boolean lenientJson;
+    private final Budget budget;
     private ToolCallbackHandler toolCallbackHandler;
+    // null if every prompt goes to the model
+    private ResponseCache responseCache;
+    // null if every stream has its own model response
+    private SingleFlight singleFlight;
+    // null if the streams are not measured
+    private AgentMeters meters;
     
     public BaseAgent(ChatClient client, ObjectMapper mapper, ToolCallConfig config) {
         this.chatClient = client;
         this.mapper = mapper;
         this.injectSchema = config.injectSchema();
-        this.toolCallbackHandler = new BaseToolCallbackHandler(this, new BaseToolCallParser(mapper), mapper, config);
+        this.jsonLimits = config.jsonLimits();
+        this.lenientJson = config.lenientJson();
+        this.tagParser = new TagParser(config.tags());
+        this.payloadParser = tagParser.newParser();
+        this.reasoningField = config.reasoningField();
+        this.budget = config.budget();
+        var multipleCalls = config.isMultipleToolCalls();
+        ToolCallParser toolCallParser = new BaseToolCallParser(mapper, jsonLimits, lenientJson, multipleCalls, config.toolPlans());
+        if (config.schemaFormat() == SchemaFormat.YAML) {
+            // models prompted with YAML schema may answer in YAML blocks as well as in JSON
+            toolCallParser = new YamlToolCallParser(mapper, toolCallParser, jsonLimits, multipleCalls, config.toolPlans());
+        }
+        this.toolCallbackHandler = new BaseToolCallbackHandler(this, toolCallParser, mapper, config);
     }
 
     public BaseAgent(ChatClient client, ObjectMapper mapper) {
@@ -51,64 +92,350 @@ public class BaseAgent implements Agent {
         this.toolCallbackHandler = toolCallbackHandler;
     }
 
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Replays the responses recorded for the same prompts instead of calling the model.
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Streams identical prompts in flight at the same time, e.g. of many sessions, from one model response.
+     */
+    public void setSingleFlight(SingleFlight singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    public AgentMeters getMeters() {
+        return meters;
+    }
+
+    public void setMeters(AgentMeters meters) {
+        this.meters = meters;
+    }
+
     public List<Message> toMessages(List<? extends Payload> payloads, boolean includeThinking) {
         return PayloadAggregator.toMessages(payloads, toolCallbackHandler, includeThinking);
     }
 
     @Override
     public <T extends Payload> Flux<T> stream(Prompt prompt) {
+        return stream(prompt, budget);
+    }
+
+    /**
+     * Streams with the budget instead of the configured one, a stream which exhausts it
+     * ends with {@link Exhausted}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Payload> Flux<T> stream(Prompt prompt, Budget budget) {
+        return Flux.defer(() -> {
+            var recorder = meters != null ? meters.recorder(prompt) : Recorder.NONE;
+            var spend = new Spend(budget, recorder);
+            Flux<T> stream = this.stream(prompt, spend);
+            if (budget.timeout() != null) {
+                stream = stream
+                    .takeUntilOther(Mono.delay(budget.timeout()).doOnNext(i -> spend.timedOut = true))
+                    .concatWith(Flux.defer(() -> spend.timedOut ? Flux.just((T) spend.exhausted(Limit.TIME)) : Flux.empty()));
+            }
+            // the tool handler and the parsers of the turns find the recorder and the budget in the context
+            return stream
+                .doOnTerminate(recorder::finished)
+                .doOnCancel(recorder::finished)
+                .contextWrite(Context.of(Recorder.class, recorder, Budget.class, budget));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Payload> Flux<T> stream(Prompt prompt, Spend spend) {
         final Prompt toolPrompt;
         if (!(prompt instanceof PromptWithTools) && this.injectSchema) {
             toolPrompt = toolCallbackHandler.addToolsToPrompt(prompt);
         } else {
             toolPrompt = prompt;
         }
-        Flux<T> stream = this.streamPayload(toolPrompt);
-        return this.toolCallbackHandler.handle(stream)
-            .concatMap(e -> this.handleFunctionResult(e, toolPrompt));
+        Flux<T> stream = this.streamPayload(toolPrompt, spend);
+        return Flux.defer(() -> {
+            // all results of the turn go back in a single prompt
+            var funcResults = new ArrayList<FuncResult>(1);
+            return this.toolCallbackHandler.handle(stream)
+                // the handler runs no more calls of the turn than the budget has left
+                .contextWrite(context -> context.put(Budget.class, spend.turnBudget()))
+                .doOnNext(e -> {
+                    if (e instanceof FuncResult funcResult) {
+                        funcResults.add(funcResult);
+                    }
+                })
+                .concatWith(Flux.defer(() -> {
+                    if (funcResults.isEmpty()) {
+                        return Flux.empty();
+                    }
+                    var exhausted = spend.toolCallsRun(funcResults.size());
+                    return exhausted != null ? Flux.just((T) exhausted) : this.<T>handleFunctionResults(funcResults, toolPrompt, spend);
+                }));
+        });
     }
 
     public <T> Flux<Structured<T>> parseJSON(Flux<? extends Payload> stream, TypeReference<T> type) {
-        var parser = new StreamingJsonParser(mapper.getFactory(), mapper);
-        return stream
-            .filter(e -> e instanceof Text) // only text events, not thinking etc
-            .handle((textEvent, sink) -> {
-                parser.feedText(((Text) textEvent).text(), textEvent.isLast());
-                parser.consume(node -> {
-                    try {
-                        sink.next(new Structured<>(mapper.treeToValue(node, type)));
-                        sink.complete();
-                    } catch (JsonProcessingException ignored) {}
-                });
+        return parseJSON(stream, type, false);
+    }
+
+    /**
+     * With {@code partial}, a snapshot of the value is emitted as a non last {@link Structured}
+     * after every chunk which completes a root property or an element of a root container.
+     */
+    public <T> Flux<Structured<T>> parseJSON(Flux<? extends Payload> stream, TypeReference<T> type, boolean partial) {
+        return Flux.defer(() -> {
+            var parser = new StreamingJsonParser(mapper.getFactory(), mapper, true, jsonLimits);
+            parser.lenient(lenientJson);
+            var reader = mapper.readerFor(type);
+            var found = new AtomicReference<Structured<T>>();
+            // the text around the value is not needed
+            var discard = Writer.nullWriter();
+            parser.consume(reader, (T value) -> {
+                parser.shouldStop();
+                found.set(new Structured<>(value));
             });
+            if (partial) {
+                parser.consumePartial(reader, (T value) -> found.set(new Structured<>(value, false)));
+            }
+            return stream
+                .filter(e -> e instanceof Text) // only text events, not thinking etc
+                .handle((textEvent, sink) -> {
+                    parse(() -> parser.feedText(((Text) textEvent).text(), textEvent.isLast(), discard));
+                    var structured = found.getAndSet(null);
+                    if (structured != null) {
+                        sink.next(structured);
+                        if (structured.isLast()) {
+                            sink.complete();
+                        }
+                    }
+                });
+        });
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Emits every element of a root JSON array, or every root value (e.g. JSON Lines),
+     * as a separate {@link Structured} as soon as it closes, until the text ends.
+     */
+    public <T> Flux<Structured<T>> parseJSONElements(Flux<? extends Payload> stream, TypeReference<T> elementType) {
+        return Flux.defer(() -> {
+            var parser = new StreamingJsonParser(mapper.getFactory(), mapper, true, jsonLimits);
+            parser.lenient(lenientJson);
+            var found = new ArrayList<Structured<T>>();
+            // the text around the value is not needed
+            var discard = Writer.nullWriter();
+            parser.streamElements(true);
+            parser.consume(mapper.readerFor(elementType), (T value) -> found.add(new Structured<>(value)));
+            return stream
+                .filter(e -> e instanceof Text) // only text events, not thinking etc
+                .concatMapIterable(textEvent -> {
+                    parse(() -> parser.feedText(((Text) textEvent).text(), textEvent.isLast(), discard));
+                    var elements = List.copyOf(found);
+                    found.clear();
+                    return elements;
+                });
+        });
+    }
+
+    private void parse(Runnable parse) {
+        Supplier<Void> run = () -> {
+            parse.run();
+            return null;
+        };
+        var meters = this.meters;
+        if (meters == null) {
+            AgentEvents.parse("json", run);
+        } else {
+            meters.parse("json", run);
+        }
+    }
+
+    /**
+     * Maps the chunks of one stream at a time, the tags are scanned with a single parser
+     * of the agent.
+     *
+     * @deprecated use {@link #toPayload(ChatResponse, TagParser)} with a parser per stream,
+     * e.g. a {@link TagParser#newParser()}, so concurrent streams don't share its state
+     */
+    @Deprecated
     public <P extends Event.Payload> P toPayload(ChatResponse chatResponse) {
+        return toPayload(chatResponse, reasoningField != null ? null : payloadParser);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <P extends Event.Payload> P toPayload(ChatResponse chatResponse, TagParser parser) {
         if (chatResponse.hasToolCalls()) {
             var call = chatResponse.getResult().getOutput().getToolCalls().getFirst();
             return (P) new Event.FuncCall(call.id(), call.name(), Utils.read(mapper, call.arguments(), Utils.MAP_TYPE));
+        } else if (parser == null) {
+            // no tags to scan, e.g. with native reasoning
+            return (P) Utils.newTextEvent(Utils.getText(chatResponse), Utils.isLastChunk(chatResponse));
         } else {
-            return (P) thinkParser.acceptChunk(Utils.getText(chatResponse), Utils.isLastChunk(chatResponse));
+            return (P) parser.acceptChunk(Utils.getText(chatResponse), Utils.isLastChunk(chatResponse));
         }
     }
 
-    private <T extends Payload> Flux<T> handleFunctionResult(T payload, Prompt prompt) {
-        if (payload instanceof FuncResult funcResult) {
-            var messages = new ArrayList<>(prompt.getInstructions());
-            messages.addAll(toolCallbackHandler.getToolMessages(funcResult));
-            Prompt nextPrompt = new PromptWithTools(messages, prompt.getOptions());
-            return Flux.concat(Flux.just(payload), this.stream(nextPrompt));
+    private <T extends Payload> Flux<T> handleFunctionResults(List<FuncResult> funcResults, Prompt prompt, Spend spend) {
+        // the history of the previous turns is shared, not copied
+        var messages = MessageHistory.of(prompt.getInstructions()).append(toolCallbackHandler.getToolMessages(funcResults));
+        Prompt nextPrompt = new PromptWithTools(messages, prompt.getOptions());
+        return this.stream(nextPrompt, spend);
+    }
+
+    /**
+     * Same as {@link #toPayload(ChatResponse, TagParser)}, but maps every tool call of the chunk.
+     */
+    @SuppressWarnings("unchecked")
+    public <P extends Event.Payload> List<P> toPayloads(ChatResponse chatResponse, TagParser parser) {
+        if (!chatResponse.hasToolCalls()) {
+            return List.of(this.<P>toPayload(chatResponse, parser));
         }
-        return Flux.just(payload);
+        return chatResponse.getResults().stream()
+            .flatMap(g -> g.getOutput().getToolCalls().stream())
+            .map(call -> (P) new Event.FuncCall(call.id(), call.name(), Utils.read(mapper, call.arguments(), Utils.MAP_TYPE)))
+            .toList();
+    }
+
+    /**
+     * Maps a chunk with native reasoning in the {@code reasoningField} metadata of the output
+     * to thinking, followed by the text or the tool call of the chunk. {@code thinking} is the
+     * state of the stream, the thinking is marked last when the answer starts.
+     */
+    @SuppressWarnings("unchecked")
+    public <P extends Event.Payload> List<P> toPayloads(ChatResponse chatResponse, AtomicBoolean thinking) {
+        var reasoning = chatResponse.getResults().stream()
+            .map(g -> g.getOutput().getMetadata().get(reasoningField))
+            .filter(r -> r instanceof String text && !text.isEmpty())
+            .map(String.class::cast)
+            .collect(Collectors.joining());
+        var isLast = Utils.isLastChunk(chatResponse);
+        var text = Utils.getText(chatResponse);
+        var answer = chatResponse.hasToolCalls() || isLast || !text.isEmpty();
+        var payloads = new ArrayList<P>(2);
+        if (!reasoning.isEmpty() || answer && thinking.get()) {
+            payloads.add((P) Utils.newThinkingEvent(reasoning.isEmpty() ? null : reasoning, answer));
+            thinking.set(!answer);
+        }
+        if (answer || reasoning.isEmpty()) {
+            payloads.addAll(this.<P>toPayloads(chatResponse, (TagParser) null));
+        }
+        return payloads;
+    }
+
+    private <T extends Payload> Flux<T> streamPayload(Prompt prompt, Spend spend) {
+        // parser state belongs to the subscription, so concurrent streams of one agent don't share it
+        return Flux.defer(() -> {
+            // once the tool calls are used up, the model answers with the results it has
+            var tools = spend.hasToolCallsLeft() ? toolCallbackHandler.getToolCallbacks() : new ToolCallback[0];
+            Supplier<Flux<ChatResponse>> client = () -> this.chatClient
+                .prompt(prompt)
+                .tools(tools)
+                .stream()
+                .chatResponse();
+            var singleFlight = this.singleFlight;
+            Supplier<Flux<ChatResponse>> model = singleFlight != null ? () -> singleFlight.stream(prompt, tools, client) : client;
+            var recorder = spend.recorder;
+            var responses = (responseCache != null ? responseCache.stream(prompt, tools, model) : model.get())
+                .doOnSubscribe(s -> recorder.turnStarted())
+                .doOnSubscribe(s -> spend.turnStarted())
+                .doOnNext(AgentEvents::chunkReceived)
+                .doOnNext(recorder::chunk)
+                .doOnNext(spend::usage);
+            if (reasoningField != null) {
+                var thinking = new AtomicBoolean();
+                return responses.concatMapIterable(chatResponse -> recorder.parse("reasoning", () -> this.<T>toPayloads(chatResponse, thinking)));
+            }
+            var parser = tagParser.newParser();
+            return responses.concatMapIterable(chatResponse -> recorder.parse("think", () -> this.<T>toPayloads(chatResponse, parser)));
+        });
     }
 
-    private <T extends Payload> Flux<T> streamPayload(Prompt prompt) {
-        return this.chatClient
-            .prompt(prompt)
-            .tools(toolCallbackHandler.getToolCallbacks())
-            .stream()
-            .chatResponse()
-            .map(this::toPayload);
+    /**
+     * What a stream has used of its budget, the turns of a stream run one after another.
+     */
+    private static final class Spend {
+        private final Budget budget;
+        private final Recorder recorder;
+        private final long start = System.nanoTime();
+        private int toolCalls = 0;
+        private long tokens = 0;
+        // the usage of the current turn counted so far
+        private long turnTokens = 0;
+        private volatile boolean timedOut = false;
+
+        Spend(Budget budget, Recorder recorder) {
+            this.budget = budget;
+            this.recorder = recorder;
+        }
+
+        void turnStarted() {
+            turnTokens = 0;
+        }
+
+        /**
+         * Counts the usage of a chunk. Models which send the usage with more than one chunk
+         * of a turn send the usage of the turn so far, so the largest one is the usage of the
+         * turn, not their sum.
+         */
+        void usage(ChatResponse chatResponse) {
+            var usage = chatResponse.getMetadata().getUsage();
+            long total = usage != null && usage.getTotalTokens() != null ? usage.getTotalTokens() : 0;
+            if (total > turnTokens) {
+                tokens += total - turnTokens;
+                AgentMetrics.tokensUsed(total - turnTokens);
+                turnTokens = total;
+            }
+        }
+
+        boolean hasToolCallsLeft() {
+            return budget.maxToolCalls() == null || toolCalls < budget.maxToolCalls();
+        }
+
+        /**
+         * The budget of the next turn, with the tool calls which are left.
+         */
+        Budget turnBudget() {
+            if (budget.maxToolCalls() == null) {
+                return budget;
+            }
+            return new Budget(budget.maxToolCalls() - toolCalls, budget.maxTokens(), budget.timeout());
+        }
+
+        /**
+         * Counts the {@code count} results of a turn, the calls over the budget didn't run.
+         * Returns the payload which ends the stream if the budget is exhausted, or null if
+         * the next turn may run. A turn which uses up the tool calls is followed by one without
+         * tools, the stream ends when that one still calls tools.
+         */
+        Exhausted toolCallsRun(int count) {
+            var run = budget.maxToolCalls() == null ? count : Math.min(count, budget.maxToolCalls() - toolCalls);
+            toolCalls += run;
+            AgentMetrics.toolCallsRun(run);
+            if (run == 0) {
+                return exhausted(Limit.TOOL_CALLS);
+            }
+            if (budget.maxTokens() != null && tokens >= budget.maxTokens()) {
+                return exhausted(Limit.TOKENS);
+            }
+            return null;
+        }
+
+        Exhausted exhausted(Limit limit) {
+            AgentMetrics.budgetExhausted(limit);
+            return switch (limit) {
+                case TOOL_CALLS -> new Exhausted(limit, toolCalls, budget.maxToolCalls());
+                case TOKENS -> new Exhausted(limit, tokens, budget.maxTokens());
+                case TIME -> new Exhausted(limit, Duration.ofNanos(System.nanoTime() - start).toMillis(), budget.timeout().toMillis());
+            };
+        }
     }
 }
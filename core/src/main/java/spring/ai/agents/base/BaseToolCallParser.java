@@ -2,11 +2,13 @@ package spring.ai.agents.base;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import reactor.core.publisher.Flux;
 import spring.ai.agents.ToolCallParser;
@@ -14,50 +16,97 @@ import spring.ai.agents.Utils;
 import spring.ai.agents.Agent.Event.FuncCall;
 import spring.ai.agents.Agent.Event.Payload;
 import spring.ai.agents.Agent.Event.Text;
-import spring.ai.parser.StreamingJsonParser;;
+import spring.ai.agents.base.AgentMeters.Recorder;
+import spring.ai.parser.StreamingJsonParser;
+import spring.ai.parser.StreamingJsonParser.Limits;
 
 public class BaseToolCallParser implements ToolCallParser {
 
     private final ObjectMapper mapper;
+    private final ObjectReader toolCallReader;
+    private final Limits limits;
+    private final boolean lenient;
+    // false stops at the first call
+    private final boolean multipleCalls;
+    // true if the ids of the model are kept, the calls of a plan refer to each other by them
+    private final boolean planIds;
 
-    public BaseToolCallParser(ObjectMapper mapper) {
+    public BaseToolCallParser(ObjectMapper mapper, Limits limits, boolean lenient, boolean multipleCalls, boolean planIds) {
         this.mapper = mapper;
+        this.limits = limits;
+        this.lenient = lenient;
+        this.multipleCalls = multipleCalls;
+        this.planIds = planIds;
+        this.toolCallReader = mapper.readerFor(ToolCall.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    public BaseToolCallParser(ObjectMapper mapper, Limits limits, boolean lenient, boolean multipleCalls) {
+        this(mapper, limits, lenient, multipleCalls, false);
+    }
+
+    public BaseToolCallParser(ObjectMapper mapper, Limits limits, boolean lenient) {
+        this(mapper, limits, lenient, false);
+    }
+
+    public BaseToolCallParser(ObjectMapper mapper, Limits limits) {
+        this(mapper, limits, false);
+    }
+
+    public BaseToolCallParser(ObjectMapper mapper) {
+        this(mapper, Limits.DEFAULT);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <T extends Payload> Flux<T> parse(Flux<T> stream, Set<String> validToolNames) {
-        var toolCalls = new ArrayList<FuncCall>(1);
-        var parser = new StreamingJsonParser(mapper.getFactory(), mapper);
-        parser.consume(node -> parseToolCall(parser, node, toolCalls, validToolNames));
-        return (Flux<T>) stream.map(payload -> {
-            if (payload instanceof Text text) {
-                var outText = parser.feedText(text.text() == null ? "" : text.text(), text.isLast());
-                return toolCalls.size() > 0 ? toolCalls.getFirst() : Utils.newTextEvent(outText, text.isLast());
+        return Flux.deferContextual(context -> {
+            var recorder = context.getOrDefault(Recorder.class, Recorder.NONE);
+            var toolCalls = new ArrayList<FuncCall>(1);
+            var parser = new StreamingJsonParser(mapper.getFactory(), mapper, true, limits);
+            parser.lenient(lenient);
+            // a single call or an array of calls, each one is bound on its own so a bad one doesn't drop the others
+            parser.consumeEach(toolCallReader, (ToolCall call) -> addToolCall(parser, call, toolCalls, validToolNames));
+            if (multipleCalls) {
+                return (Flux<T>) stream.concatMapIterable(payload -> {
+                    if (payload instanceof Text text) {
+                        var outText = recorder.parse("tool-call", () -> parser.feedText(text.text() == null ? "" : text.text(), text.isLast()));
+                        // the text around the calls of the chunk, then the calls
+                        var payloads = new ArrayList<Payload>(toolCalls.size() + 1);
+                        if (toolCalls.isEmpty() || text.isLast() || !outText.isEmpty()) {
+                            payloads.add(Utils.newTextEvent(outText, text.isLast()));
+                        }
+                        payloads.addAll(toolCalls);
+                        toolCalls.clear();
+                        return payloads;
+                    }
+                    return List.of(payload);
+                });
             }
-            return payload;
+            return (Flux<T>) stream.map(payload -> {
+                if (payload instanceof Text text) {
+                    var outText = recorder.parse("tool-call", () -> parser.feedText(text.text() == null ? "" : text.text(), text.isLast()));
+                    return toolCalls.size() > 0 ? toolCalls.getFirst() : Utils.newTextEvent(outText, text.isLast());
+                }
+                return payload;
+            });
         });
     }
 
-    private void parseToolCall(StreamingJsonParser handler, JsonNode node, List<FuncCall> calls,
-            Set<String> validFunctionNames) {
-        if (node.isArray())
-            node.forEach(n -> parseToolCall(handler, n, calls, validFunctionNames));
-        else if (isFunctionCall(node, validFunctionNames) && !handler.isStopped()) {
-            try {
-                calls.add(new FuncCall(
-                        UUID.randomUUID().toString(),
-                        node.get("name").asText(),
-                        Utils.read(mapper, node.get("arguments").toString(), Utils.MAP_TYPE)
-                    )
-                );
+    private void addToolCall(StreamingJsonParser handler, ToolCall call, List<FuncCall> calls, Set<String> validFunctionNames) {
+        if (isFunctionCall(call, validFunctionNames) && !handler.isStopped()) {
+            // the id of a call in a plan is kept, its results are referred to by it
+            var id = planIds && call.id() != null && !call.id().isBlank() ? call.id() : UUID.randomUUID().toString();
+            calls.add(new FuncCall(id, call.name(), call.arguments()));
+            if (!multipleCalls) {
                 handler.shouldStop();
-            } catch (Exception ignored) {
             }
         }
     }
 
-    private static boolean isFunctionCall(JsonNode node, Set<String> validFunctionNames) {
-        return node.has("name") && node.has("arguments") && validFunctionNames.contains(node.get("name").asText());
+    private static boolean isFunctionCall(ToolCall call, Set<String> validFunctionNames) {
+        return call != null && call.name() != null && call.arguments() != null && validFunctionNames.contains(call.name());
     }
+
+    record ToolCall(String id, String name, Map<String, Object> arguments) {}
 }
@@ -12,6 +12,8 @@ import org.springframework.ai.tool.ToolCallback;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Budget;
 import spring.ai.agents.ToolCallParser;
 import spring.ai.agents.ToolCallbackHandler;
 import spring.ai.agents.Utils;
@@ -20,6 +22,7 @@ import spring.ai.agents.Agent.Event.FuncResult;
 import spring.ai.agents.Agent.Event.Text;
 import spring.ai.agents.AgentConfig.ToolCallConfig;
 import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.base.AgentMeters.Recorder;
 import spring.ai.tools.ReactiveMethodToolCallback;
 import spring.ai.tools.ReactiveToolCallbacks;
 
@@ -33,9 +36,13 @@ public class BaseToolCallbackHandler implements ToolCallbackHandler {
     private final ObjectMapper mapper;
     private final ToolCallParser toolCallParser;
     private final ToolCallConfig config;
+    private final int maxParallelToolCalls;
+    // runs the calls of a turn as a plan, null if they are independent
+    private final ToolPlanExecutor planExecutor;
 
     public BaseToolCallbackHandler(Object toolService, ToolCallParser toolCallParser, ObjectMapper mapper, ToolCallConfig config) {
         this.config = config;
+        this.maxParallelToolCalls = config.maxParallelToolCalls();
         this.mapper = mapper;
         this.toolCallParser = toolCallParser;
         this.toolCallbacks = ReactiveToolCallbacks.from(toolService);
@@ -43,19 +50,57 @@ public class BaseToolCallbackHandler implements ToolCallbackHandler {
         for (var toolCallback : this.toolCallbacks) {
             this.toolCallbackMap.put(toolCallback.getToolDefinition().name(), toolCallback);
         }
+        this.planExecutor = config.toolPlans() ? new ToolPlanExecutor(this::callTool, mapper, maxParallelToolCalls) : null;
     }
 
+    @SuppressWarnings("unchecked")
     public <T extends Payload> Flux<T> handle(Flux<T> stream) {
         if (toolCallbacks.length == 0) {
             return stream;
         }
         if (this.toolCallParser != null) {
-            stream = this.toolCallParser.parse(stream, toolCallbackMap.keySet())
-                .takeUntil(e -> e instanceof FuncCall); // stop on first tool call
+            var parsed = this.toolCallParser.parse(stream, toolCallbackMap.keySet());
+            if (!config.isMultipleToolCalls()) {
+                // with a token budget the turn runs to its end, as the usage comes with the last chunk,
+                // the budget of the stream is in its context if it has one
+                stream = Flux.deferContextual(context -> context.getOrDefault(Budget.class, config.budget()).maxTokens() == null
+                    ? parsed.takeUntil(e -> e instanceof FuncCall) // stop on first tool call
+                    : parsed);
+            } else {
+                stream = parsed;
+            }
         }
-        return stream.expand(this::handleToolCalls);
+        var payloads = stream;
+        var firstCallOnly = !config.isMultipleToolCalls();
+        return Flux.deferContextual(context -> {
+            // the calls of the turn run when it ends, their results keep the order of the calls
+            var toolCalls = new ArrayList<FuncCall>(1);
+            // the calls the budget of the turn has left, null if unlimited
+            var maxToolCalls = context.getOrDefault(Budget.class, config.budget()).maxToolCalls();
+            return payloads
+                .filter(e -> !(e instanceof FuncCall && firstCallOnly && !toolCalls.isEmpty()))
+                .doOnNext(e -> {
+                    if (e instanceof FuncCall toolWanted) {
+                        AgentEvents.funcCallDetected(toolWanted);
+                        toolCalls.add(toolWanted);
+                    }
+                })
+                .concatWith(Flux.defer(() -> {
+                    var run = maxToolCalls == null || toolCalls.size() <= maxToolCalls ? toolCalls : toolCalls.subList(0, maxToolCalls);
+                    var results = planExecutor != null ? (Flux<T>) planExecutor.execute(run)
+                        : Flux.fromIterable(run).flatMapSequential(this::<T>handleToolCall, maxParallelToolCalls);
+                    // the calls over the budget get an error, so the model knows they didn't run
+                    return results.concatWith(Flux.fromIterable(toolCalls.subList(run.size(), toolCalls.size()))
+                        .map(call -> (T) new FuncResult(call, "Error: No tool calls left in the budget, the call didn't run")));
+                }));
+        });
     }
 
+    @Override
+	public List<Message> getToolMessages(List<FuncResult> funcs) {
+        return config.toolResponse(funcs, mapper);
+	}
+
     @Override
 	public List<Message> getToolMessages(FuncResult func) {
         return config.toolResponse(func, mapper);
@@ -84,7 +129,7 @@ public class BaseToolCallbackHandler implements ToolCallbackHandler {
         } else {
             messages.add(0, toolsMessage);
         }
-		return new PromptWithTools(messages, prompt.getOptions());
+		return new PromptWithTools(MessageHistory.of(messages), prompt.getOptions());
 	}
 
 	@Override
@@ -98,18 +143,26 @@ public class BaseToolCallbackHandler implements ToolCallbackHandler {
         return (Flux<T>) Flux.just(new Text(Utils.write(mapper, toolWanted), true));
     }
 
-    @SuppressWarnings("unchecked")
-    private <T extends Payload> Flux<T> handleToolCalls(T payload) {
-        if (payload instanceof FuncCall toolWanted) {
+    private Mono<String> callTool(FuncCall toolWanted) {
+        return Mono.deferContextual(context -> {
+            var recorder = context.getOrDefault(Recorder.class, Recorder.NONE);
             var toolCallback = toolCallbackMap.get(toolWanted.name());
             if (toolCallback == null) {
-                return toolNotFoundFallback(toolWanted);
+                return recorder.tool(toolWanted.name(), Mono.error(new IllegalArgumentException("Tool not found: " + toolWanted.name())));
             }
-            return toolCallback.callNonBlocking(Utils.write(mapper, toolWanted.arguments()))
-                .map(result -> (T) new FuncResult(toolWanted, result))
-                .flux();
+            return recorder.tool(toolWanted.name(), toolCallback.callNonBlocking(Utils.write(mapper, toolWanted.arguments())));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Payload> Flux<T> handleToolCall(FuncCall toolWanted) {
+        var toolCallback = toolCallbackMap.get(toolWanted.name());
+        if (toolCallback == null) {
+            return toolNotFoundFallback(toolWanted);
         }
-        return Flux.empty();
+        return callTool(toolWanted)
+            .map(result -> (T) new FuncResult(toolWanted, result))
+            .flux();
     }
 
     
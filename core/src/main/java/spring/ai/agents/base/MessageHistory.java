@@ -0,0 +1,130 @@
+package spring.ai.agents.base;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.ai.chat.messages.Message;
+
+/**
+ * Immutable list of messages which shares its prefix with the history it was appended to.
+ * Every append (e.g. the tool messages of a turn) adds a segment on top of the previous
+ * history instead of copying it, so a loop of N tool turns doesn't copy O(N²) messages and
+ * forks of a conversation share their common prefix.
+ */
+public final class MessageHistory extends AbstractList<Message> {
+
+    public static final MessageHistory EMPTY = new MessageHistory(null, new Message[0]);
+
+    private final MessageHistory parent;
+    private final Message[] segment;
+    private final int size;
+    // number of segments, the root is 1
+    private final int depth;
+
+    private MessageHistory(MessageHistory parent, Message[] segment) {
+        this.parent = parent;
+        this.segment = segment;
+        this.size = (parent != null ? parent.size : 0) + segment.length;
+        this.depth = parent != null ? parent.depth + 1 : 1;
+    }
+
+    /**
+     * Returns the messages as a history, a history is returned as is, other lists are copied.
+     */
+    public static MessageHistory of(List<? extends Message> messages) {
+        if (messages instanceof MessageHistory history) {
+            return history;
+        }
+        return EMPTY.append(messages);
+    }
+
+    /**
+     * Returns a history with the messages after these ones, this history is not changed and
+     * may be appended to again, e.g. to fork the conversation.
+     */
+    public MessageHistory append(List<? extends Message> messages) {
+        if (messages.isEmpty()) {
+            return this;
+        }
+        var appended = messages.toArray(new Message[0]);
+        // appending to the empty history starts a new root
+        return new MessageHistory(size == 0 ? null : this, appended);
+    }
+
+    public MessageHistory append(Message message) {
+        return append(List.of(message));
+    }
+
+    /**
+     * Returns the history of the first {@code size} messages, sharing the segments before it.
+     */
+    public MessageHistory prefix(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException(size);
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+        var history = this;
+        while (history.parent != null && history.parent.size >= size) {
+            history = history.parent;
+        }
+        if (history.size == size) {
+            return history;
+        }
+        var start = history.size - history.segment.length;
+        var prefix = new Message[size - start];
+        System.arraycopy(history.segment, 0, prefix, 0, prefix.length);
+        return new MessageHistory(history.parent, prefix);
+    }
+
+    @Override
+    public Message get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        var history = this;
+        while (index < history.size - history.segment.length) {
+            history = history.parent;
+        }
+        return history.segment[index - (history.size - history.segment.length)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Message> iterator() {
+        var segments = new Message[depth][];
+        var count = 0;
+        for (var history = this; history != null; history = history.parent) {
+            segments[count++] = history.segment;
+        }
+        var last = count - 1;
+        return new Iterator<>() {
+            private int segmentIndex = last;
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (segmentIndex >= 0 && index == segments[segmentIndex].length) {
+                    segmentIndex--;
+                    index = 0;
+                }
+                return segmentIndex >= 0;
+            }
+
+            @Override
+            public Message next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return segments[segmentIndex][index++];
+            }
+        };
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.ai.chat.messages.Message;
 import reactor.core.publisher.Flux;
 import spring.ai.agents.ToolCallbackHandler;
 import spring.ai.agents.Utils;
+import spring.ai.agents.Agent.Event.FuncCall;
 import spring.ai.agents.Agent.Event.FuncResult;
 import spring.ai.agents.Agent.Event.Payload;
 import spring.ai.agents.Agent.Event.Structured;
@@ -92,29 +93,49 @@ public final class PayloadAggregator {
     public static List<Message> toMessages(List<? extends Payload> payloads, ToolCallbackHandler handler, boolean includeThinking) {
         List<Message> messages = new ArrayList<>();
         var buffer = new StringBuffer();
+        // the results of the calls of a turn, in one assistant message and its responses
+        var funcs = new ArrayList<FuncResult>();
         
         for (Payload payload : payloads) {
+            if (payload instanceof FuncCall) {
+                // the results of a turn follow all of its calls, a call after them starts the next turn
+                addToolMessages(messages, handler, funcs);
+                continue;
+            }
+            if (payload instanceof FuncResult func) {
+                buffer.setLength(0);
+                funcs.add(func);
+                continue;
+            }
             if (includeThinking && payload instanceof Thinking thinking) {
+                addToolMessages(messages, handler, funcs);
                 buffer.append("<think>\n" + thinking.text() + "\n</think>\n\n");
             } else if (payload instanceof Structured<?> struct) {
                 // TODO: what about structured payloads?
             } else if (payload instanceof Text text) {
+                addToolMessages(messages, handler, funcs);
                 buffer.append(text.text() + "\n");
                 addMessage(messages, new AssistantMessage(buffer.toString()));
                 buffer.setLength(0);
-            } else if (payload instanceof FuncResult func) {
-                buffer.setLength(0);
-                for (var message : handler.getToolMessages(func)) {
-                    addMessage(messages, message);
-                }
             }
         }
+        addToolMessages(messages, handler, funcs);
         if (buffer.length() > 0) {
             addMessage(messages, new AssistantMessage(buffer.toString()));
         }
         return messages;
     }
 
+    private static void addToolMessages(List<Message> messages, ToolCallbackHandler handler, List<FuncResult> funcs) {
+        if (funcs.isEmpty()) {
+            return;
+        }
+        for (var message : handler.getToolMessages(funcs)) {
+            addMessage(messages, message);
+        }
+        funcs.clear();
+    }
+
     public static void addMessage(List<Message> existing, Message message) {
         if (message == null) {
             return;
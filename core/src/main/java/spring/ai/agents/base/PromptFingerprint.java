@@ -0,0 +1,99 @@
+package spring.ai.agents.base;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+/**
+ * Identity of a prompt as it is sent to the model: prompts with the same fingerprint get
+ * the same response from a deterministic model.
+ */
+public final class PromptFingerprint {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptFingerprint.class);
+
+    // the same options in any order have the same fingerprint, the tools are keyed by their definitions
+    private static final ObjectMapper mapper = JsonMapper.builder()
+        .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+        .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+        .addMixIn(ToolCallback.class, IgnoredType.class)
+        .build();
+
+    @JsonIgnoreType
+    private interface IgnoredType {
+    }
+
+    private PromptFingerprint() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Returns the SHA-256 of the messages, the options and the tool definitions, in hex. The
+     * options are keyed by their type and every property, e.g. the response format or the
+     * seed of the options of a model; returns null if they can't be serialized to JSON, the
+     * prompt then has no identity.
+     */
+    public static String of(Prompt prompt, ToolCallback[] tools) {
+        var key = new LinkedHashMap<String, Object>();
+        key.put("messages", prompt.getInstructions().stream().map(PromptFingerprint::messageKey).toList());
+        var options = prompt.getOptions();
+        if (options != null) {
+            key.put("options", List.of(options.getClass().getName(), options));
+        }
+        var toolsKey = new ArrayList<Object>(tools.length);
+        for (var tool : tools) {
+            var definition = tool.getToolDefinition();
+            toolsKey.add(List.of(definition.name(), definition.description(), definition.inputSchema()));
+        }
+        key.put("tools", toolsKey);
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(key);
+        } catch (JsonProcessingException e) {
+            logger.debug("Cannot fingerprint the options {}", options.getClass().getName(), e);
+            return null;
+        }
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> messageKey(Message message) {
+        var key = new LinkedHashMap<String, Object>();
+        key.put("type", message.getMessageType());
+        key.put("text", message.getText());
+        if (message instanceof AssistantMessage assistant && assistant.hasToolCalls()) {
+            key.put("toolCalls", assistant.getToolCalls());
+        } else if (message instanceof ToolResponseMessage response) {
+            key.put("responses", response.getResponses());
+        } else if (message instanceof UserMessage user && !user.getMedia().isEmpty()) {
+            key.put("media", user.getMedia().stream()
+                .map(media -> List.of(String.valueOf(media.getMimeType()),
+                    media.getData() instanceof byte[] bytes ? bytes : String.valueOf(media.getData())))
+                .toList());
+        }
+        return key;
+    }
+}
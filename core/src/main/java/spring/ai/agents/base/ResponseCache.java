@@ -0,0 +1,309 @@
+package spring.ai.agents.base;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Records the chunks of model responses to files and replays them for the same prompt,
+ * e.g. to run tests and demos without a model. A response is keyed by the fingerprint of
+ * the prompt as it is sent: its messages, options and tool definitions, a prompt whose
+ * options have no fingerprint is not recorded. It is replayed with the chunk boundaries of
+ * the recording, and with its timing if {@code replayTiming}.
+ * <p>
+ * A response is recorded to its end even if the agent cancels it, e.g. at the first tool
+ * call, so tool turns are replayed as well. A failed one is not recorded. The files are
+ * written on the bounded elastic scheduler, and the least recently used ones are deleted
+ * when the directory grows over {@code maxBytes}.
+ */
+public class ResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+    private static final String SUFFIX = ".json";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean replayTiming;
+    // fingerprint -> file size, least recently used first
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    public ResponseCache(Path directory, long maxBytes, boolean replayTiming) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.replayTiming = replayTiming;
+        try {
+            Files.createDirectories(directory);
+            try (var stream = Files.list(directory)) {
+                // the modification time of a file is its last use
+                stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(ResponseCache::lastModified))
+                    .forEach(path -> {
+                        var size = size(path);
+                        files.put(fingerprint(path), size);
+                        totalBytes += size;
+                    });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replays the recorded response of the prompt, or streams and records the response of the model.
+     */
+    public Flux<ChatResponse> stream(Prompt prompt, ToolCallback[] tools, Supplier<Flux<ChatResponse>> model) {
+        return Flux.defer(() -> {
+            var fingerprint = PromptFingerprint.of(prompt, tools);
+            if (fingerprint == null) {
+                return model.get();
+            }
+            return Mono.fromCallable(() -> read(fingerprint))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(recording -> replay(fingerprint, recording))
+                .switchIfEmpty(Flux.defer(() -> {
+                    AgentMetrics.responseCacheMiss();
+                    return record(fingerprint, model.get());
+                }));
+        });
+    }
+
+    /**
+     * Returns the name of the recording of the prompt, or null if it is not recorded, see {@link PromptFingerprint}.
+     */
+    public String fingerprint(Prompt prompt, ToolCallback[] tools) {
+        return PromptFingerprint.of(prompt, tools);
+    }
+
+    /**
+     * Deletes the recorded response of the fingerprint, returns false if there was none.
+     */
+    public boolean invalidate(String fingerprint) {
+        synchronized (files) {
+            var size = files.remove(fingerprint);
+            if (size == null) {
+                return false;
+            }
+            totalBytes -= size;
+            delete(fingerprint);
+            return true;
+        }
+    }
+
+    public boolean invalidate(Prompt prompt, ToolCallback[] tools) {
+        return invalidate(fingerprint(prompt, tools));
+    }
+
+    public void clear() {
+        synchronized (files) {
+            files.keySet().forEach(this::delete);
+            files.clear();
+            totalBytes = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (files) {
+            return files.size();
+        }
+    }
+
+    public long sizeInBytes() {
+        synchronized (files) {
+            return totalBytes;
+        }
+    }
+
+    private Flux<ChatResponse> replay(String fingerprint, Recording recording) {
+        AgentMetrics.responseCacheHit();
+        var responses = Flux.fromIterable(recording.chunks());
+        if (replayTiming) {
+            responses = responses.concatMap(chunk -> chunk.delayNanos() > 0
+                ? Mono.just(chunk).delayElement(Duration.ofNanos(chunk.delayNanos()))
+                : Mono.just(chunk));
+        }
+        return responses.map(Chunk::toResponse);
+    }
+
+    private Flux<ChatResponse> record(String fingerprint, Flux<ChatResponse> responses) {
+        return Flux.deferContextual(context -> {
+            var chunks = new ArrayList<Chunk>();
+            var last = new long[] {System.nanoTime()};
+            var recorded = responses
+                .doOnNext(response -> {
+                    var now = System.nanoTime();
+                    chunks.add(Chunk.of(response, now - last[0]));
+                    last[0] = now;
+                })
+                // before the completion goes downstream, so the next prompt finds the recording
+                .concatWith(Mono.<ChatResponse>fromRunnable(() -> write(fingerprint, new Recording(chunks)))
+                    .subscribeOn(Schedulers.boundedElastic()));
+            // the response runs to its end when the consumer cancels, the chunks it doesn't take are dropped
+            var consumer = Sinks.many().unicast().<ChatResponse>onBackpressureBuffer();
+            recorded.contextWrite(context).subscribe(consumer::tryEmitNext, consumer::tryEmitError, consumer::tryEmitComplete);
+            return consumer.asFlux();
+        });
+    }
+
+    private Recording read(String fingerprint) {
+        synchronized (files) {
+            if (files.get(fingerprint) == null) {
+                return null;
+            }
+        }
+        var path = path(fingerprint);
+        try {
+            var recording = mapper.readValue(path.toFile(), Recording.class);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return recording;
+        } catch (IOException e) {
+            // deleted meanwhile, or not a recording
+            logger.warn("Cannot read recorded response {}", path, e);
+            invalidate(fingerprint);
+            return null;
+        }
+    }
+
+    private void write(String fingerprint, Recording recording) {
+        if (recording.chunks().isEmpty()) {
+            return;
+        }
+        var path = path(fingerprint);
+        try {
+            var temp = Files.createTempFile(directory, fingerprint, ".tmp");
+            mapper.writeValue(temp.toFile(), recording);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Cannot record response {}", path, e);
+            return;
+        }
+        synchronized (files) {
+            var previous = files.put(fingerprint, size(path));
+            totalBytes += files.get(fingerprint) - (previous != null ? previous : 0);
+            var eldest = files.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                var entry = eldest.next();
+                eldest.remove();
+                totalBytes -= entry.getValue();
+                delete(entry.getKey());
+                AgentMetrics.responseCacheEviction();
+            }
+        }
+    }
+
+    private void delete(String fingerprint) {
+        try {
+            Files.deleteIfExists(path(fingerprint));
+        } catch (IOException e) {
+            logger.warn("Cannot delete recorded response {}", fingerprint, e);
+        }
+    }
+
+    private Path path(String fingerprint) {
+        return directory.resolve(fingerprint + SUFFIX);
+    }
+
+    private static String fingerprint(Path path) {
+        var name = path.getFileName().toString();
+        return name.substring(0, name.length() - SUFFIX.length());
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The recorded chunks of a response.
+     */
+    record Recording(List<Chunk> chunks) {}
+
+    /**
+     * A recorded chunk, {@code delayNanos} after the previous one or the request.
+     */
+    record Chunk(long delayNanos, List<Output> outputs, String id, String model, Integer promptTokens, Integer completionTokens) {
+
+        record Output(String text, Map<String, Object> metadata, List<ToolCall> toolCalls, String finishReason) {}
+
+        static Chunk of(ChatResponse response, long delayNanos) {
+            var outputs = response.getResults().stream().map(generation -> {
+                var message = generation.getOutput();
+                // only plain values, e.g. native reasoning, the rest is specific to the client
+                var metadata = new LinkedHashMap<String, Object>();
+                message.getMetadata().forEach((key, value) -> {
+                    if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+                        metadata.put(key, value);
+                    }
+                });
+                return new Output(message.getText(), metadata, message.getToolCalls(), generation.getMetadata().getFinishReason());
+            }).toList();
+            var metadata = response.getMetadata();
+            var usage = metadata.getUsage();
+            var hasUsage = usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0;
+            return new Chunk(delayNanos, outputs, metadata.getId(), metadata.getModel(),
+                hasUsage ? usage.getPromptTokens() : null, hasUsage ? usage.getCompletionTokens() : null);
+        }
+
+        ChatResponse toResponse() {
+            var generations = outputs.stream()
+                .map(output -> new Generation(
+                    new AssistantMessage(output.text(), output.metadata(), output.toolCalls() != null ? output.toolCalls() : List.of()),
+                    ChatGenerationMetadata.builder().finishReason(output.finishReason()).build()))
+                .toList();
+            var metadata = ChatResponseMetadata.builder();
+            if (id != null) {
+                metadata.id(id);
+            }
+            if (model != null) {
+                metadata.model(model);
+            }
+            if (promptTokens != null || completionTokens != null) {
+                metadata.usage(new DefaultUsage(promptTokens, completionTokens));
+            }
+            return new ChatResponse(generations, metadata.build());
+        }
+    }
+}
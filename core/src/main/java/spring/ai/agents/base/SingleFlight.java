@@ -0,0 +1,77 @@
+package spring.ai.agents.base;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuple2;
+
+/**
+ * Streams identical prompts which are in flight at the same time from a single model
+ * response, e.g. a prompt broadcast to many sessions. A prompt joins the response in flight
+ * while its first {@code bufferSize} chunks are buffered and replays them, later it gets a
+ * response of its own. The model response is cancelled when every stream has cancelled it.
+ */
+public class SingleFlight {
+
+    private final int bufferSize;
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    public SingleFlight(int bufferSize) {
+        this.bufferSize = Math.max(1, bufferSize);
+    }
+
+    public Flux<ChatResponse> stream(Prompt prompt, ToolCallback[] tools, Supplier<Flux<ChatResponse>> model) {
+        return Flux.defer(() -> {
+            var key = PromptFingerprint.of(prompt, tools);
+            if (key == null) {
+                return model.get();
+            }
+            var joined = new boolean[1];
+            var flight = flights.compute(key, (k, current) -> {
+                if (current != null && current.emitted.get() < bufferSize) {
+                    joined[0] = true;
+                    return current;
+                }
+                return new Flight(k, model);
+            });
+            if (!joined[0]) {
+                return flight.responses.map(Tuple2::getT2);
+            }
+            AgentMetrics.promptCoalesced();
+            // the buffer may have moved on between the check and the subscription
+            return flight.responses.switchOnFirst((first, responses) -> first.hasValue() && first.get().getT1() > 0
+                ? model.get()
+                : responses.map(Tuple2::getT2));
+        });
+    }
+
+    /**
+     * Returns the number of distinct prompts in flight.
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    private final class Flight {
+        // chunks with their index, so a stream can tell it missed the first ones
+        final Flux<Tuple2<Long, ChatResponse>> responses;
+        final AtomicLong emitted = new AtomicLong();
+
+        Flight(String key, Supplier<Flux<ChatResponse>> model) {
+            // removed before the completion goes downstream, so no prompt joins a finished flight
+            this.responses = Flux.defer(model)
+                .doOnNext(response -> emitted.incrementAndGet())
+                .doOnTerminate(() -> flights.remove(key, this))
+                .doOnCancel(() -> flights.remove(key, this))
+                .index()
+                .replay(bufferSize)
+                .refCount();
+        }
+    }
+}
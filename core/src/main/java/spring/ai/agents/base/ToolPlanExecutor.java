@@ -0,0 +1,213 @@
+package spring.ai.agents.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Agent.Event.FuncCall;
+import spring.ai.agents.Agent.Event.FuncResult;
+
+/**
+ * Runs a plan of tool calls, where {@code ${id}} in an argument refers to the result of the
+ * call with that id. Calls run as soon as the calls they refer to have finished, up to
+ * {@code maxParallel} at once. A failed call fails the calls which depend on it, the
+ * others still run, so the model gets every result of the plan at once. The calls on a
+ * cycle of references fail, and so do the calls depending on them. A call repeating the id
+ * of an earlier one doesn't run and gets an error result.
+ */
+public class ToolPlanExecutor {
+
+    private static final Pattern REFERENCE = Pattern.compile("\\$\\{([^}]+)}");
+
+    private final Function<FuncCall, Mono<String>> tools;
+    private final ObjectMapper mapper;
+    private final int maxParallel;
+
+    public ToolPlanExecutor(Function<FuncCall, Mono<String>> tools, ObjectMapper mapper, int maxParallel) {
+        this.tools = tools;
+        this.mapper = mapper;
+        this.maxParallel = Math.max(1, maxParallel);
+    }
+
+    /**
+     * Returns the results in the order of the plan.
+     */
+    public Flux<FuncResult> execute(List<FuncCall> plan) {
+        return Flux.defer(() -> {
+            var calls = new LinkedHashMap<String, FuncCall>();
+            // a call repeating the id of an earlier one doesn't run, the model gets an error for it
+            var duplicate = new boolean[plan.size()];
+            for (var i = 0; i < plan.size(); i++) {
+                duplicate[i] = calls.putIfAbsent(plan.get(i).id(), plan.get(i)) != null;
+            }
+            var dependencies = new LinkedHashMap<String, Set<String>>();
+            for (var call : calls.values()) {
+                var references = new LinkedHashSet<String>();
+                collectReferences(call.arguments(), calls.keySet(), references);
+                dependencies.put(call.id(), references);
+            }
+            // the calls on a cycle, with their reference on the cycle
+            var cycles = new HashMap<String, String>();
+            var order = levelOrder(dependencies, cycles);
+            var outcomes = new HashMap<String, Mono<Outcome>>();
+            for (var id : order) {
+                outcomes.put(id, cycles.containsKey(id)
+                    ? Mono.just(Outcome.failed("Cyclic reference to " + cycles.get(id)))
+                    : outcome(calls.get(id), dependencies.get(id), outcomes));
+            }
+            // outcomes are cached, the results are read in the order of the plan once all are done
+            return Flux.fromIterable(order)
+                .flatMap(outcomes::get, maxParallel)
+                .thenMany(Flux.range(0, plan.size()))
+                .concatMap(i -> {
+                    var call = plan.get(i);
+                    if (duplicate[i]) {
+                        return Mono.just(new FuncResult(call, Outcome.failed("Duplicate id " + call.id() + ", the call didn't run").result()));
+                    }
+                    return outcomes.get(call.id()).map(outcome -> new FuncResult(call, outcome.result()));
+                });
+        });
+    }
+
+    private Mono<Outcome> outcome(FuncCall call, Set<String> references, Map<String, Mono<Outcome>> outcomes) {
+        return Flux.fromIterable(references)
+            .concatMap(outcomes::get)
+            .collectList()
+            .flatMap(results -> {
+                var values = new HashMap<String, String>();
+                var index = 0;
+                for (var reference : references) {
+                    var result = results.get(index++);
+                    if (result.failed()) {
+                        return Mono.just(Outcome.failed("Skipped, " + reference + " failed"));
+                    }
+                    values.put(reference, result.result());
+                }
+                @SuppressWarnings("unchecked")
+                var arguments = (Map<String, Object>) substitute(call.arguments(), values);
+                return Mono.defer(() -> tools.apply(new FuncCall(call.id(), call.name(), arguments)))
+                    .map(Outcome::new)
+                    .defaultIfEmpty(new Outcome(""))
+                    .onErrorResume(e -> Mono.just(Outcome.failed(e.getMessage())));
+            })
+            .cache();
+    }
+
+    /**
+     * Returns the ids level by level, calls without references first, so a call waiting for
+     * others doesn't hold a slot an independent one could use. When only calls waiting on a
+     * cycle are left, the calls on the cycle are put into {@code cycles} and come next, so the
+     * calls depending on them come after them and fail as dependents of a failed call.
+     */
+    private static List<String> levelOrder(Map<String, Set<String>> dependencies, Map<String, String> cycles) {
+        var order = new ArrayList<String>(dependencies.size());
+        var done = new LinkedHashSet<String>();
+        var remaining = new LinkedHashSet<>(dependencies.keySet());
+        while (!remaining.isEmpty()) {
+            var level = remaining.stream().filter(id -> done.containsAll(dependencies.get(id))).toList();
+            if (level.isEmpty()) {
+                for (var id : remaining) {
+                    dependencies.get(id).stream()
+                        .filter(reference -> reaches(dependencies, reference, id))
+                        .findFirst()
+                        .ifPresent(reference -> cycles.put(id, reference));
+                }
+                // every call left waits on a call left, so following the references ends in a cycle
+                level = remaining.stream().filter(cycles::containsKey).toList();
+            }
+            order.addAll(level);
+            done.addAll(level);
+            level.forEach(remaining::remove);
+        }
+        return order;
+    }
+
+    private static boolean reaches(Map<String, Set<String>> dependencies, String from, String to) {
+        var visited = new LinkedHashSet<String>();
+        var pending = new ArrayList<>(List.of(from));
+        while (!pending.isEmpty()) {
+            var id = pending.remove(pending.size() - 1);
+            if (id.equals(to)) {
+                return true;
+            }
+            if (visited.add(id)) {
+                pending.addAll(dependencies.get(id));
+            }
+        }
+        return false;
+    }
+
+    private static void collectReferences(Object value, Set<String> ids, Set<String> references) {
+        if (value instanceof String text) {
+            var matcher = REFERENCE.matcher(text);
+            while (matcher.find()) {
+                if (ids.contains(matcher.group(1))) {
+                    references.add(matcher.group(1));
+                }
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            map.values().forEach(v -> collectReferences(v, ids, references));
+        } else if (value instanceof List<?> list) {
+            list.forEach(v -> collectReferences(v, ids, references));
+        }
+    }
+
+    /**
+     * Replaces the references with the results. A string which is a single reference is
+     * replaced by the JSON value of the result, in other strings a JSON string result is
+     * inserted as text.
+     */
+    private Object substitute(Object value, Map<String, String> results) {
+        if (value instanceof String text) {
+            var matcher = REFERENCE.matcher(text);
+            if (matcher.matches() && results.containsKey(matcher.group(1))) {
+                return readValue(results.get(matcher.group(1)));
+            }
+            return matcher.replaceAll(match -> {
+                var result = results.get(match.group(1));
+                if (result == null) {
+                    return Matcher.quoteReplacement(match.group());
+                }
+                return Matcher.quoteReplacement(readValue(result) instanceof String string ? string : result);
+            });
+        } else if (value instanceof Map<?, ?> map) {
+            var substituted = new LinkedHashMap<Object, Object>();
+            map.forEach((k, v) -> substituted.put(k, substitute(v, results)));
+            return substituted;
+        } else if (value instanceof List<?> list) {
+            return list.stream().map(v -> substitute(v, results)).toList();
+        }
+        return value;
+    }
+
+    private Object readValue(String result) {
+        try {
+            return mapper.readValue(result, Object.class);
+        } catch (JsonProcessingException e) {
+            // not JSON, e.g. a plain text result
+            return result;
+        }
+    }
+
+    private record Outcome(String result, boolean failed) {
+        Outcome(String result) {
+            this(result, false);
+        }
+
+        static Outcome failed(String message) {
+            return new Outcome("Error: " + message, true);
+        }
+    }
+}
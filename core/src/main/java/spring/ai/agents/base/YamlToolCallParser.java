@@ -0,0 +1,367 @@
+package spring.ai.agents.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import spring.ai.agents.ToolCallParser;
+import spring.ai.agents.Utils;
+import spring.ai.agents.Agent.Event.FuncCall;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.Agent.Event.Text;
+import spring.ai.parser.StreamingJsonParser.Limits;
+
+/**
+ * Detects tool calls in fenced YAML blocks (```yaml or ```yml), as models prompted with
+ * a YAML schema tend to answer. A block is held back until its closing fence, then it is
+ * either dispatched as a tool call or passed through as text. A turn which starts with a
+ * tool mapping ({@code name:} or {@code - name:}) without a fence is a block up to a blank
+ * line or the end of the mapping or list. Blocks over {@link Limits#maxBytes()} UTF-8 bytes
+ * are passed through. The rest of the text goes to the delegate parser, e.g.
+ * {@link BaseToolCallParser} for JSON tool calls.
+ */
+public class YamlToolCallParser implements ToolCallParser {
+
+    private static final String fence = "```";
+    // the starts of a turn which is a tool mapping, or a list of them
+    private static final List<String> mappingStarts = List.of("name:", "- name:");
+    // a line of a mapping at the indentation of its first key
+    private static final Pattern key = Pattern.compile("[\\w.-]+:(\\s.*)?");
+    private static final Pattern keyStart = Pattern.compile("[\\w.-]*|[\\w.-]+:.*");
+
+    private final ObjectMapper mapper;
+    private final ToolCallParser delegate;
+    private final Limits limits;
+    // false stops at the first call
+    private final boolean multipleCalls;
+    // true if the ids of the model are kept, the calls of a plan refer to each other by them
+    private final boolean planIds;
+
+    public YamlToolCallParser(ObjectMapper mapper, ToolCallParser delegate, Limits limits, boolean multipleCalls, boolean planIds) {
+        this.mapper = mapper;
+        this.delegate = delegate;
+        this.limits = limits != null ? limits : Limits.DEFAULT;
+        this.multipleCalls = multipleCalls;
+        this.planIds = planIds;
+    }
+
+    public YamlToolCallParser(ObjectMapper mapper, ToolCallParser delegate, Limits limits, boolean multipleCalls) {
+        this(mapper, delegate, limits, multipleCalls, false);
+    }
+
+    public YamlToolCallParser(ObjectMapper mapper, ToolCallParser delegate, Limits limits) {
+        this(mapper, delegate, limits, false);
+    }
+
+    public YamlToolCallParser(ObjectMapper mapper, ToolCallParser delegate) {
+        this(mapper, delegate, Limits.DEFAULT);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends Payload> Flux<T> parse(Flux<T> stream, Set<String> validToolNames) {
+        return Flux.defer(() -> {
+            var blocks = new YamlBlocks(validToolNames);
+            var yamlStream = stream.concatMapIterable(payload -> payload instanceof Text text ? (List<T>) blocks.feed(text) : List.of(payload));
+            return delegate != null ? delegate.parse(yamlStream, validToolNames) : yamlStream;
+        });
+    }
+
+    /**
+     * Splits the text into plain text and fenced blocks, state of a single stream.
+     */
+    private final class YamlBlocks {
+        private final Set<String> validToolNames;
+        private final Yaml yaml = new Yaml(new SafeConstructor(new LoaderOptions()));
+        private final StringBuilder pending = new StringBuilder();
+        // UTF-8 bytes of pending, compared to the limit
+        private long pendingBytes = 0;
+        // inside a fenced block: true if it is buffered as YAML, false if passed through
+        private boolean inBlock = false;
+        private boolean yamlBlock = false;
+        // the block is the turn from its start, without fences
+        private boolean unfenced = false;
+        // of the unfenced block: a list of mappings or a mapping, the indentation of its first line
+        private boolean listBlock = false;
+        private int blockIndent = -1;
+        // the chunk ends the turn, its last line needs no line break
+        private boolean lastChunk = false;
+        // nothing of the turn is passed through yet
+        private boolean turnStart = true;
+        // index in pending where the closing fence is searched from
+        private int searchFrom = 0;
+        private boolean stopped = false;
+
+        YamlBlocks(Set<String> validToolNames) {
+            this.validToolNames = validToolNames;
+        }
+
+        List<Payload> feed(Text text) {
+            var chunk = text.text() == null ? "" : text.text();
+            if (stopped) {
+                return List.of(text);
+            }
+            pending.append(chunk);
+            pendingBytes += utf8Length(chunk, 0, chunk.length());
+            lastChunk = text.isLast();
+            if (turnStart) {
+                var mapping = startsWithToolMapping();
+                if (mapping == null && !text.isLast()) {
+                    // held back until it shows whether the turn is a tool mapping
+                    return List.of(Utils.newTextEvent("", false));
+                }
+                turnStart = false;
+                if (Boolean.TRUE.equals(mapping)) {
+                    inBlock = true;
+                    yamlBlock = true;
+                    unfenced = true;
+                    listBlock = pending.toString().stripLeading().startsWith("-");
+                    blockIndent = -1;
+                    searchFrom = 0;
+                }
+            }
+            var out = new StringBuilder();
+            var calls = new ArrayList<Payload>(1);
+            while ((multipleCalls || calls.isEmpty()) && scan(out)) {
+                if (yamlBlock) {
+                    calls.addAll(closeBlock(out));
+                }
+            }
+            if (text.isLast() && pending.length() > 0 && (multipleCalls || calls.isEmpty())) {
+                // an unclosed block at the end of the stream
+                List<FuncCall> blockCalls = List.of();
+                if (yamlBlock) {
+                    blockCalls = toolCalls(unfenced ? pending.toString() : pending.substring(pending.indexOf("\n") + 1));
+                }
+                if (blockCalls.isEmpty()) {
+                    out.append(pending);
+                }
+                calls.addAll(blockCalls);
+                drop(pending.length());
+                inBlock = false;
+                yamlBlock = false;
+                unfenced = false;
+            }
+            if (!multipleCalls && !calls.isEmpty()) {
+                stopped = true;
+                return calls;
+            }
+            if (calls.isEmpty() || text.isLast() || out.length() > 0) {
+                // the text around the calls of the chunk, then the calls
+                calls.addFirst(Utils.newTextEvent(out.toString(), text.isLast()));
+            }
+            return calls;
+        }
+
+        /**
+         * Moves the text which is not held back to {@code out}, returns true when a
+         * block closes. A closed YAML block is left at the start of pending.
+         */
+        private boolean scan(StringBuilder out) {
+            while (true) {
+                if (!inBlock) {
+                    var start = pending.indexOf(fence);
+                    if (start < 0) {
+                        // a fence may be split between chunks
+                        var keep = 0;
+                        while (keep < 2 && keep < pending.length() && pending.charAt(pending.length() - 1 - keep) == '`') {
+                            keep++;
+                        }
+                        flush(out, pending.length() - keep);
+                        return false;
+                    }
+                    flush(out, start);
+                    var lineEnd = pending.indexOf("\n", fence.length());
+                    if (lineEnd < 0) {
+                        return false;
+                    }
+                    var lang = pending.substring(fence.length(), lineEnd).strip();
+                    inBlock = true;
+                    yamlBlock = lang.equalsIgnoreCase("yaml") || lang.equalsIgnoreCase("yml");
+                    searchFrom = lineEnd;
+                    if (!yamlBlock) {
+                        flush(out, lineEnd + 1);
+                        searchFrom = 0;
+                    }
+                }
+                if (unfenced) {
+                    var end = unfencedEnd();
+                    if (end >= 0) {
+                        // the rest of the turn is scanned as usual
+                        inBlock = false;
+                        searchFrom = end;
+                        return true;
+                    }
+                    if (pendingBytes <= limits.maxBytes()) {
+                        return false;
+                    }
+                    // too large for a tool call, the text is scanned for fenced blocks
+                    inBlock = false;
+                    yamlBlock = false;
+                    unfenced = false;
+                    continue;
+                }
+                var close = pending.indexOf("\n" + fence, Math.max(0, searchFrom - fence.length()));
+                if (close < 0) {
+                    if (yamlBlock && pendingBytes > limits.maxBytes()) {
+                        // too large for a tool call, passed through as text
+                        yamlBlock = false;
+                    }
+                    if (!yamlBlock) {
+                        // keep a possible start of the closing fence only
+                        flush(out, pending.length() - Math.min(pending.length(), fence.length()));
+                    }
+                    searchFrom = pending.length();
+                    return false;
+                }
+                inBlock = false;
+                if (yamlBlock) {
+                    searchFrom = close;
+                    return true;
+                }
+                flush(out, close + 1 + fence.length());
+                searchFrom = 0;
+            }
+        }
+
+        /**
+         * Parses the closed YAML block at the start of pending, either as a tool call or
+         * as text appended to {@code out}.
+         */
+        private List<FuncCall> closeBlock(StringBuilder out) {
+            var contentStart = unfenced ? 0 : Math.min(pending.indexOf("\n") + 1, searchFrom);
+            var end = unfenced ? searchFrom : searchFrom + 1 + fence.length();
+            var calls = toolCalls(pending.substring(contentStart, searchFrom));
+            if (calls.isEmpty()) {
+                flush(out, end);
+            } else {
+                drop(end);
+            }
+            yamlBlock = false;
+            unfenced = false;
+            searchFrom = 0;
+            return calls;
+        }
+
+        /**
+         * Returns the start of the line which ends the unfenced block, or -1 while it may go on.
+         * The block ends at a blank line, or at a line at its indentation which is neither a
+         * key of its mapping nor an item of its list, as soon as its start shows it.
+         */
+        private int unfencedEnd() {
+            while (searchFrom < pending.length()) {
+                var lineEnd = pending.indexOf("\n", searchFrom);
+                // the last line of the turn needs no line break
+                var complete = lineEnd >= 0 || lastChunk;
+                if (lineEnd < 0) {
+                    lineEnd = pending.length();
+                }
+                var line = pending.substring(searchFrom, lineEnd);
+                var content = complete ? line.strip() : line.stripLeading();
+                var indent = line.length() - line.stripLeading().length();
+                if (blockIndent >= 0 && (content.isEmpty() ? complete
+                        : indent < blockIndent || indent == blockIndent && !continuesBlock(content, complete))) {
+                    return searchFrom;
+                }
+                if (!complete) {
+                    return -1;
+                }
+                if (blockIndent < 0 && !content.isEmpty()) {
+                    blockIndent = indent;
+                }
+                searchFrom = lineEnd + 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Returns true if the line at the indentation of the block may belong to it, an
+         * incomplete line while its start may still become a key or an item.
+         */
+        private boolean continuesBlock(String line, boolean complete) {
+            if (line.startsWith("#")) {
+                return true;
+            }
+            if (listBlock) {
+                return line.equals("-") || line.startsWith("- ");
+            }
+            return (complete ? key : keyStart).matcher(line).matches();
+        }
+
+        /**
+         * Returns true if the turn starts with a tool mapping, false if not, null if the text
+         * is too short to tell.
+         */
+        private Boolean startsWithToolMapping() {
+            var head = pending.toString().stripLeading();
+            Boolean mapping = false;
+            for (var start : mappingStarts) {
+                if (head.startsWith(start)) {
+                    return true;
+                }
+                if (start.startsWith(head)) {
+                    mapping = null;
+                }
+            }
+            return mapping;
+        }
+
+        private void flush(StringBuilder out, int end) {
+            if (end > 0) {
+                out.append(pending, 0, end);
+                drop(end);
+            }
+        }
+
+        private void drop(int end) {
+            pendingBytes -= utf8Length(pending, 0, end);
+            pending.delete(0, end);
+        }
+
+        /**
+         * Returns the calls of a block, only the first one unless multiple calls are parsed.
+         */
+        private List<FuncCall> toolCalls(String content) {
+            var calls = new ArrayList<FuncCall>(1);
+            try {
+                var document = yaml.load(content);
+                var candidates = document instanceof List<?> list ? list : Collections.singletonList(document);
+                for (var candidate : candidates) {
+                    if (candidate instanceof Map<?, ?> call && call.get("name") instanceof String name
+                            && call.get("arguments") instanceof Map<?, ?> arguments && validToolNames.contains(name)) {
+                        var id = planIds && call.get("id") instanceof String callId && !callId.isBlank() ? callId : UUID.randomUUID().toString();
+                        calls.add(new FuncCall(id, name, mapper.convertValue(arguments, Utils.MAP_TYPE)));
+                        if (!multipleCalls) {
+                            break;
+                        }
+                    }
+                }
+            } catch (YAMLException | IllegalArgumentException e) {
+                // not a tool call
+            }
+            return calls;
+        }
+    }
+
+    private static long utf8Length(CharSequence text, int from, int to) {
+        var bytes = 0L;
+        for (int i = from; i < to; i++) {
+            var ch = text.charAt(i);
+            // a surrogate pair is 4 bytes
+            bytes += ch < 0x80 ? 1 : ch < 0x800 || Character.isSurrogate(ch) ? 2 : 3;
+        }
+        return bytes;
+    }
+}
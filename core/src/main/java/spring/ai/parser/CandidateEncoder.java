@@ -0,0 +1,251 @@
+package spring.ai.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the text of a JSON candidate to UTF-8 into a reused buffer, and scans it
+ * lexically on the way: strings, escapes and brackets, so encoding stops at the char
+ * which closes the candidate. The scan also finds the first byte which is lexically
+ * invalid, the parser's position of an error is not reliable for every error.
+ */
+final class CandidateEncoder {
+
+    private final PythonLiterals pythonLiterals = new PythonLiterals();
+    private byte[] bytes = new byte[256];
+    private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private boolean lenient = false;
+    private boolean open = true;
+    private boolean inString = false;
+    private boolean escaped = false;
+    private int depth = 0;
+    private int unicodeDigits = 0;
+    private char quote = '"';
+    // the last char outside of strings which is not whitespace, 0 if none
+    private char lastToken = 0;
+    // a number which starts with '0', only '.', an exponent or the end of the number may follow
+    private boolean zero = false;
+    // first byte of the last encoded input which is lexically invalid
+    private int errorByte = -1;
+    // the error is a '}' where a value is expected, which the parser may accept at the end of its input
+    private boolean missingValue = false;
+
+    /**
+     * In lenient mode single quotes are strings and Python literals outside of strings are
+     * rewritten to JSON ones. A missing value is left to the parser, it may be in a comment.
+     */
+    void lenient(boolean lenient) {
+        this.lenient = lenient;
+    }
+
+    /**
+     * Encodes text[from, to) into the buffer, stops after the char which lexically closes the
+     * candidate, or before a '}' where a value is expected. Returns the index where it stopped.
+     * Chars are taken as bytes if {@code byteInput}, e.g. UTF-8 given as Latin-1 chars.
+     * Unpaired surrogates (e.g. a pair split between two chunks) are replaced with '?'.
+     */
+    int encode(String text, int from, int to, boolean byteInput) {
+        var required = (to - from) * 3;
+        if (bytes.length < required) {
+            bytes = new byte[Math.max(required, bytes.length * 2)];
+            buffer = ByteBuffer.wrap(bytes);
+        }
+        var bytes = this.bytes;
+        var n = 0;
+        var i = from;
+        errorByte = -1;
+        missingValue = false;
+        while (i < to) {
+            var ch = text.charAt(i++);
+            if (ch < 0x80 || byteInput) {
+                if (lenient && !inString) {
+                    ch = pythonLiterals.relax(ch);
+                }
+                if (open && scan(ch, n)) {
+                    if (missingValue) {
+                        // the parser gets the input up to it and fails on the error
+                        i--;
+                        break;
+                    }
+                    bytes[n++] = (byte) ch;
+                    break;
+                }
+                bytes[n++] = (byte) ch;
+                continue;
+            }
+            if (inString && (escaped || unicodeDigits > 0)) {
+                markError(n);
+            }
+            escaped = false;
+            unicodeDigits = 0;
+            zero = false;
+            if (!inString) {
+                lastToken = ch;
+            }
+            pythonLiterals.interrupt();
+            if (ch < 0x800) {
+                bytes[n++] = (byte) (0xC0 | (ch >> 6));
+                bytes[n++] = (byte) (0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i < to && Character.isLowSurrogate(text.charAt(i))) {
+                var cp = Character.toCodePoint(ch, text.charAt(i++));
+                bytes[n++] = (byte) (0xF0 | (cp >> 18));
+                bytes[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[n++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(ch)) {
+                bytes[n++] = '?';
+            } else {
+                bytes[n++] = (byte) (0xE0 | (ch >> 12));
+                bytes[n++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                bytes[n++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+        buffer.limit(n).position(0);
+        return i;
+    }
+
+    /**
+     * Scans text from {@code from} until the candidate closes without encoding it, returns
+     * the index after the closing char or the length of the text.
+     */
+    int skip(String text, int from) {
+        var length = text.length();
+        var end = from;
+        while (end < length && open) {
+            var ch = text.charAt(end++);
+            if (ch < 0x80) {
+                scan(ch, -1);
+            } else {
+                escaped = false;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * The encoded input, to be fed to the parser.
+     */
+    ByteBuffer input() {
+        return buffer;
+    }
+
+    /**
+     * Returns false once the candidate is closed, the rest of the text is not scanned.
+     */
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Returns the first lexically invalid byte of the last encoded input, or -1.
+     */
+    int errorByte() {
+        return errorByte;
+    }
+
+    /**
+     * Returns true if the last encoded input stopped before a '}' where a value is expected.
+     */
+    boolean isMissingValue() {
+        return missingValue;
+    }
+
+    void reset() {
+        open = true;
+        inString = false;
+        escaped = false;
+        depth = 0;
+        unicodeDigits = 0;
+        quote = '"';
+        lastToken = 0;
+        zero = false;
+        pythonLiterals.reset();
+    }
+
+    /**
+     * Tracks strings, numbers and brackets of the candidate, returns true when the char
+     * closes it or is a '}' where a value is expected. Invalid chars are marked at byte
+     * {@code pos} of the input. Scanning stops at the closing char, if the parser disagrees
+     * (e.g. lenient features are enabled) the rest of the candidate is fed as is.
+     */
+    private boolean scan(char ch, int pos) {
+        if (inString) {
+            if (unicodeDigits > 0) {
+                unicodeDigits--;
+                if (Character.digit(ch, 16) < 0) {
+                    markError(pos);
+                }
+            } else if (escaped) {
+                escaped = false;
+                if (ch == 'u') {
+                    unicodeDigits = 4;
+                } else if ("\"\\/bfnrt".indexOf(ch) < 0 && !(ch == '\'' && lenient)) {
+                    markError(pos);
+                }
+            } else if (ch == '\\') {
+                escaped = true;
+            } else if (ch == quote) {
+                inString = false;
+            } else if (ch < 0x20) {
+                markError(pos);
+            }
+            return false;
+        }
+        if (zero && ".eE,]} \t\r\n".indexOf(ch) < 0) {
+            // the parser peeks the char after a leading '0' without consuming it
+            markError(pos);
+        }
+        zero = ch == '0' && (lastToken == 0 || ":,[{".indexOf(lastToken) >= 0);
+        if (ch == '"' || ch == '\'' && lenient) {
+            inString = true;
+            quote = ch;
+        } else if (ch == '{' || ch == '[') {
+            depth++;
+        } else if (ch == '}' && (lastToken == ':' || lastToken == ',') && !lenient && pos >= 0) {
+            // the parser accepts it when the separator ends its input, in lenient mode it may be in a comment
+            markError(pos);
+            missingValue = true;
+            return true;
+        } else if ((ch == '}' || ch == ']') && --depth <= 0) {
+            open = false;
+            return true;
+        }
+        if (!isWhitespace(ch)) {
+            lastToken = ch;
+        }
+        return false;
+    }
+
+    private void markError(int pos) {
+        if (errorByte < 0) {
+            errorByte = pos;
+        }
+    }
+
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n';
+    }
+
+    /**
+     * Returns the number of chars from {@code from} which cover the first {@code bytes} encoded bytes.
+     */
+    static int charsForBytes(String text, int from, int bytes) {
+        var i = from;
+        var n = 0;
+        while (n < bytes && i < text.length()) {
+            var ch = text.charAt(i++);
+            if (ch < 0x80) {
+                n++;
+            } else if (ch < 0x800) {
+                n += 2;
+            } else if (Character.isHighSurrogate(ch) && i < text.length() && Character.isLowSurrogate(text.charAt(i))) {
+                i++;
+                n += 4;
+            } else if (Character.isSurrogate(ch)) {
+                n++;
+            } else {
+                n += 3;
+            }
+        }
+        return i - from;
+    }
+}
@@ -0,0 +1,38 @@
+package spring.ai.parser;
+
+/**
+ * Finds the next '{', '[' or '`' in a text, remembers the next position of
+ * each char, so every char of the text is scanned at most once per symbol.
+ */
+final class CandidateScanner {
+
+    private String text;
+    private int nextObject;
+    private int nextArray;
+    private int nextFence;
+
+    void reset(String text) {
+        this.text = text;
+        this.nextObject = -1;
+        this.nextArray = -1;
+        this.nextFence = -1;
+    }
+
+    int next(int from) {
+        if (nextObject < from) {
+            nextObject = indexOf('{', from);
+        }
+        if (nextArray < from) {
+            nextArray = indexOf('[', from);
+        }
+        if (nextFence < from) {
+            nextFence = indexOf('`', from);
+        }
+        return Math.min(nextObject, Math.min(nextArray, nextFence));
+    }
+
+    private int indexOf(char ch, int from) {
+        var index = text.indexOf(ch, from);
+        return index < 0 ? text.length() : index;
+    }
+}
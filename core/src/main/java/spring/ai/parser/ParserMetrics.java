@@ -0,0 +1,53 @@
+package spring.ai.parser;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide counters of the streaming parsers, parser instances live only as long as a stream.
+ */
+public final class ParserMetrics {
+
+    public enum Limit {
+        BYTES, DEPTH, TOKENS
+    }
+
+    private static final LongAdder[] abortedCandidates = {
+        new LongAdder(), new LongAdder(), new LongAdder()
+    };
+
+    private static final LongAdder parsedBytes = new LongAdder();
+
+    private ParserMetrics() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Returns the number of JSON candidates which were aborted because they exceeded the limit.
+     */
+    public static long abortedCandidates(Limit limit) {
+        return abortedCandidates[limit.ordinal()].sum();
+    }
+
+    public static long abortedCandidates() {
+        var total = 0L;
+        for (var counter : abortedCandidates) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of bytes fed to JSON parsers, including bytes replayed after errors.
+     */
+    public static long parsedBytes() {
+        return parsedBytes.sum();
+    }
+
+    static void bytesParsed(long bytes) {
+        parsedBytes.add(bytes);
+    }
+
+    static void candidateAborted(Limit limit) {
+        abortedCandidates[limit.ordinal()].increment();
+    }
+}
@@ -0,0 +1,71 @@
+package spring.ai.parser;
+
+import java.util.Arrays;
+
+/**
+ * Rewrites the Python literals {@code True}, {@code False} and {@code None} outside of
+ * strings to JSON ones char by char, where a value is expected. The JSON literals have
+ * the same length, so byte offsets of the candidate stay valid.
+ */
+final class PythonLiterals {
+
+    private static final String[] pythonLiterals = { "True", "False", "None" };
+    private static final String[] jsonLiterals = { "true", "false", "null" };
+
+    // a value may start at the next char, or a literal is being rewritten
+    private boolean valueExpected = false;
+    private int literal = -1;
+    private int literalPos = 0;
+    // the open containers, true for an array: a ',' is followed by a value in an array only, by a key in an object
+    private boolean[] arrays = new boolean[16];
+    private int depth = 0;
+
+    char relax(char ch) {
+        if (literal >= 0) {
+            if (ch == pythonLiterals[literal].charAt(literalPos)) {
+                ch = jsonLiterals[literal].charAt(literalPos);
+                if (++literalPos == jsonLiterals[literal].length()) {
+                    literal = -1;
+                }
+                return ch;
+            }
+            literal = -1;
+        }
+        if (valueExpected) {
+            for (int k = 0; k < pythonLiterals.length; k++) {
+                if (ch == pythonLiterals[k].charAt(0)) {
+                    literal = k;
+                    literalPos = 1;
+                    valueExpected = false;
+                    return jsonLiterals[k].charAt(0);
+                }
+            }
+        }
+        if (ch == '{' || ch == '[') {
+            if (depth == arrays.length) {
+                arrays = Arrays.copyOf(arrays, depth * 2);
+            }
+            arrays[depth++] = ch == '[';
+        } else if ((ch == '}' || ch == ']') && depth > 0) {
+            depth--;
+        }
+        if (ch > ' ') {
+            valueExpected = ch == ':' || ch == '[' || ch == ',' && depth > 0 && arrays[depth - 1];
+        }
+        return ch;
+    }
+
+    /**
+     * A char which is not ASCII, it is neither a literal nor a separator.
+     */
+    void interrupt() {
+        literal = -1;
+        valueExpected = false;
+    }
+
+    void reset() {
+        valueExpected = false;
+        literal = -1;
+        depth = 0;
+    }
+}
@@ -0,0 +1,79 @@
+package spring.ai.parser;
+
+import java.util.Arrays;
+
+/**
+ * Where parsing resumes after a failed candidate: the next '{' or '[' inside it which
+ * doesn't start a nested value still open at the error, as parsing from such a value
+ * fails at the same char. The starts of the open values are recorded as byte offsets of
+ * the parser input, and converted to char offsets in the candidate text once the input
+ * is parsed, so every char of a candidate is parsed a bounded number of times.
+ */
+final class RecoveryPoints {
+
+    // starts of the nested objects and arrays which are still open, char offsets in the
+    // candidate, from converted on byte offsets of the last input
+    private int[] starts = new int[16];
+    private int count = 0;
+    private int converted = 0;
+
+    /**
+     * A nested value opens at the byte offset of the last input.
+     */
+    void open(int byteOffset) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+        }
+        starts[count++] = byteOffset;
+    }
+
+    void close() {
+        count--;
+        converted = Math.min(converted, count);
+    }
+
+    /**
+     * Converts the byte offsets recorded while parsing the last input, text from {@code i},
+     * to char offsets in the candidate text, which had {@code candidateChars} before it.
+     */
+    void convert(String text, int i, boolean ascii, int candidateChars) {
+        var bytes = 0;
+        var chars = 0;
+        for (var k = converted; k < count; k++) {
+            if (!ascii) {
+                chars += CandidateEncoder.charsForBytes(text, i + chars, starts[k] - bytes);
+                bytes = starts[k];
+            } else {
+                chars = starts[k];
+            }
+            starts[k] = candidateChars + chars;
+        }
+        converted = count;
+    }
+
+    /**
+     * Returns the index of the next '{' or '[' in [from, to) which doesn't start a nested
+     * value still open at the error, the candidate starts at {@code start}, or -1.
+     */
+    int next(String text, int start, int from, int to) {
+        var k = 0;
+        for (var i = from; i < to; i++) {
+            var ch = text.charAt(i);
+            if (ch != '{' && ch != '[') {
+                continue;
+            }
+            while (k < count && starts[k] < i - start) {
+                k++;
+            }
+            if (k == count || starts[k] != i - start) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void reset() {
+        count = 0;
+        converted = 0;
+    }
+}
@@ -1,21 +1,28 @@
 package spring.ai.parser;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
 
+import org.springframework.core.io.buffer.DataBuffer;
+
+import spring.ai.parser.ParserMetrics.Limit;
+
 /**
  * A streaming JSON handler that processes JSON data in a non-blocking manner.
  * It uses Jackson's streaming API to parse JSON data and allows custom
@@ -24,42 +31,131 @@ import java.util.function.Consumer;
  * The idea is that it will start parsing when it finds a '{' or '[' and stop
  * when it finds the matching '}' or ']'.
  *
- * NOTE: Performance and memory usage has not been analyzed. Use requiresOutput
- * = false,
- * if text output is not required, to avoid buffering.
+ * Text is ingested in bulk: plain text is skipped with {@link String#indexOf(int, int)}
+ * (intrinsified by the JVM) until the next '{', '[' or '`', and JSON candidates are
+ * encoded to UTF-8 into a reused buffer and fed to Jackson once per chunk.
+ * While encoding, the end of a candidate is found lexically, so Jackson gets exactly
+ * one JSON value and the same non-blocking parser is reused for the next candidate,
+ * each candidate gets a new token buffer. The parser is only recreated after a
+ * candidate fails.
+ *
+ * A candidate which exceeds the {@link Limits} is aborted: the buffered text is flushed
+ * and the rest of the candidate is passed through as text.
+ *
+ * In {@link #lenient(boolean) lenient} mode the deviations common in LLM output are
+ * accepted as well: single quotes, unquoted field names, comments, trailing commas,
+ * missing values and Python literals ({@code True}, {@code False}, {@code None}).
+ *
+ * NOTE: Use requiresOutput = false, if text output is not required, to avoid buffering.
  */
 public class StreamingJsonParser {
 
-    private static final char[] empty = new char[0];
     private static final String fenceBlock = "```json";
+    // values completed up to this depth make a partial snapshot: root properties and their elements
+    private static final int partialDepth = 2;
+    // chars fed at once to a new candidate, doubled with every feed, so a candidate which fails early costs little
+    private static final int initialWindow = 64;
+    private static final JsonReadFeature[] lenientFeatures = {
+        JsonReadFeature.ALLOW_SINGLE_QUOTES,
+        JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES,
+        JsonReadFeature.ALLOW_JAVA_COMMENTS,
+        JsonReadFeature.ALLOW_TRAILING_COMMA,
+        JsonReadFeature.ALLOW_MISSING_VALUES,
+        JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS
+    };
 
-    private final char[] charInputBuffer = new char[1];
-    private final char[] charOutputBuffer = new char[1];
-    private final StringBuffer outBuffer;
-    private final StringBuffer feedBuffer;
+    private final StringBuilder outBuffer;
+    private final StringBuilder feedBuffer;
+    // where the text of the current feedText call is written, and how many chars
+    private Appendable output;
+    private int outputCount = 0;
+    // UTF-8 bytes are fed as chars of a Latin-1 string, one char per byte
+    private boolean byteInput = false;
+    private byte[] byteChunk = new byte[0];
+    // decodes the passthrough text of byte input
+    private final Utf8Decoder decoder = new Utf8Decoder();
     private final JsonFactory jsonFactory;
     private final ObjectMapper objectMapper;
     private final boolean requiresOutput;
-    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
-    private final CharBuffer reusableCharBuffer = CharBuffer.wrap(charInputBuffer); // TODO: maybe we can buffer more,
-                                                                                    // not sure.
-    private final ByteBuffer reusableByteBuffer = ByteBuffer.allocateDirect(4); // Max bytes for a UTF-8 char
+    private final Limits limits;
+    private final CandidateScanner scanner = new CandidateScanner();
+    private final CandidateEncoder encoder = new CandidateEncoder();
     private JsonParser parser;
     private boolean buffering = false;
     private boolean shouldStop = false;
-    private Consumer<JsonNode> jsonConsumer;
+    private ObjectReader valueReader;
+    private Consumer<Object> valueConsumer;
+    // the elements of a root array are bound one by one
+    private boolean bindElements = false;
+    private ObjectReader partialReader;
+    private Consumer<Object> partialConsumer;
+    private boolean partialPending = false;
+    private int tokenCount = 0;
+    private int partialTokens = 0;
+    private boolean streamElements = false;
+    private boolean lenient = false;
+    // the candidate is a root array, whose elements are consumed one by one
+    private boolean splitting = false;
+    private int elementBytes = -1;
+    private int splitEnd = 0;
+    // the candidate exceeded the limits, the rest of it is passed through as text
+    private boolean aborted = false;
+    private long candidateBytes = 0;
     private ByteBufferFeeder inputFeeder;
+    // the tokens of the current candidate, or of the current element of a streamed array
     private TokenBuffer tokenBuffer;
+    private long parserOffset = 0;
     private int depth = 0;
     private int inFenceBlock = 0;
+    private int feedWindow = initialWindow;
+    // where the candidate starts in the text being fed, -1 if it started in a previous chunk
+    private int candidateStart = -1;
+    private int fenceStart = -1;
+    // where parsing resumes after the candidate fails
+    private final RecoveryPoints recoveryPoints = new RecoveryPoints();
+    // a failed candidate is replayed up to this index, even if the parser was stopped meanwhile
+    private int replayUntil = 0;
 
-    public StreamingJsonParser(JsonFactory factory, ObjectMapper mapper, boolean requiresOutput) {
+    public record Limits(
+        // UTF-8 bytes of a candidate
+        Long maxBytes,
+        // nesting depth of objects and arrays
+        Integer maxDepth,
+        // tokens buffered for a candidate, or for an element of a streamed array
+        Integer maxTokens
+    ) {
+        public static final Limits DEFAULT = new Limits(null, null, null);
+
+        public Limits {
+            maxBytes = maxBytes != null ? maxBytes : 4L << 20;
+            maxDepth = maxDepth != null ? maxDepth : 256;
+            maxTokens = maxTokens != null ? maxTokens : 1 << 18;
+        }
+    }
+
+    private static final class LimitExceededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final Limit limit;
+
+        LimitExceededException(Limit limit) {
+            super("Candidate exceeds the " + limit + " limit");
+            this.limit = limit;
+        }
+    }
+
+    public StreamingJsonParser(JsonFactory factory, ObjectMapper mapper, boolean requiresOutput, Limits limits) {
         this.jsonFactory = factory;
         this.objectMapper = mapper;
         this.requiresOutput = requiresOutput;
-        this.outBuffer = new StringBuffer();
-        this.feedBuffer = new StringBuffer();
-        resetParser();
+        this.limits = limits != null ? limits : Limits.DEFAULT;
+        this.outBuffer = new StringBuilder();
+        this.feedBuffer = new StringBuilder();
+        this.tokenBuffer = new TokenBuffer(mapper, false);
+    }
+
+    public StreamingJsonParser(JsonFactory factory, ObjectMapper mapper, boolean requiresOutput) {
+        this(factory, mapper, requiresOutput, Limits.DEFAULT);
     }
 
     public StreamingJsonParser(JsonFactory factory, ObjectMapper mapper) {
@@ -67,7 +163,60 @@ public class StreamingJsonParser {
     }
 
     public void consume(Consumer<JsonNode> jsonConsumer) {
-        this.jsonConsumer = jsonConsumer;
+        consume(objectMapper.readerFor(JsonNode.class), jsonConsumer);
+    }
+
+    /**
+     * Binds every found JSON value with the reader straight from the parsed tokens,
+     * without an intermediate tree. Values which can't be bound are skipped.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void consume(ObjectReader reader, Consumer<? super T> consumer) {
+        this.valueReader = reader;
+        this.valueConsumer = (Consumer<Object>) consumer;
+        this.bindElements = false;
+    }
+
+    /**
+     * Same as {@link #consume(ObjectReader, Consumer)}, but a root array is not bound as a
+     * whole: each element is bound on its own from the parsed tokens, an element which can't
+     * be bound is skipped and the others still go to the consumer.
+     */
+    public <T> void consumeEach(ObjectReader reader, Consumer<? super T> consumer) {
+        consume(reader, consumer);
+        this.bindElements = true;
+    }
+
+    /**
+     * Binds a snapshot of the JSON value which is still being parsed, with all open
+     * objects and arrays closed. A snapshot is taken at the end of a chunk, when a root
+     * property or an element of a root container has completed since the previous one.
+     * Snapshots which can't be bound are skipped, the completed value still goes to
+     * {@link #consume(ObjectReader, Consumer)}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void consumePartial(ObjectReader reader, Consumer<? super T> consumer) {
+        this.partialReader = reader;
+        this.partialConsumer = (Consumer<Object>) consumer;
+    }
+
+    /**
+     * When enabled, every element of a root array is passed to the consumer as soon as
+     * it closes and is not kept afterwards, instead of the array as a whole.
+     * Root objects (e.g. JSON Lines) are passed as usual.
+     */
+    public void streamElements(boolean streamElements) {
+        this.streamElements = streamElements;
+    }
+
+    /**
+     * When enabled, the parser accepts the lenient features of Jackson regardless of the
+     * factory configuration, and rewrites Python literals outside of strings to JSON ones.
+     */
+    public void lenient(boolean lenient) {
+        this.lenient = lenient;
+        encoder.lenient(lenient);
+        closeParser();
     }
 
     public void shouldStop() {
@@ -79,14 +228,8 @@ public class StreamingJsonParser {
     }
 
     public void close() {
-        try {
-            if (parser != null) {
-                this.shouldStop = false;
-                this.inputFeeder.endOfInput();
-                this.parser.close();
-            }
-        } catch (IOException ignored) {
-        }
+        this.shouldStop = false;
+        closeParser();
     }
 
     public String feedText(String chunk) {
@@ -97,214 +240,531 @@ public class StreamingJsonParser {
         if (chunk == null || chunk.isEmpty()) {
             return chunk;
         }
-        var last = chunk.length() - 1;
         feedBuffer.setLength(0);
-        for (int i = 0; i <= last; i++) {
-            if (shouldStop) {
-                break;
+        feedText(chunk, isLast, feedBuffer);
+        return feedBuffer.toString();
+    }
+
+    /**
+     * Same as {@link #feedText(String, boolean)}, but the text is appended to {@code out}
+     * (e.g. a reused {@link StringBuilder} or {@link java.nio.CharBuffer}) instead of
+     * allocating a string. Returns the number of chars appended.
+     */
+    public int feedText(String chunk, boolean isLast, Appendable out) {
+        if (chunk == null || chunk.isEmpty()) {
+            return 0;
+        }
+        switchInput(false);
+        return feed(chunk, isLast, out);
+    }
+
+    /**
+     * Feeds UTF-8 bytes, e.g. a slice of a response body, which go to Jackson as they are,
+     * without decoding them to a string and encoding back. Only the text passed through is
+     * decoded, when {@code out} is not null. Returns the number of chars appended. The
+     * buffer is consumed. Switching between bytes and strings in the middle of a
+     * candidate throws an {@link IllegalStateException}.
+     */
+    public int feedBytes(ByteBuffer utf8, boolean isLast, Appendable out) {
+        var length = utf8.remaining();
+        if (length == 0) {
+            return 0;
+        }
+        switchInput(true);
+        String chunk;
+        if (utf8.hasArray()) {
+            chunk = new String(utf8.array(), utf8.arrayOffset() + utf8.position(), length, StandardCharsets.ISO_8859_1);
+            utf8.position(utf8.limit());
+        } else {
+            if (byteChunk.length < length) {
+                byteChunk = new byte[Math.max(length, byteChunk.length * 2)];
+            }
+            utf8.get(byteChunk, 0, length);
+            chunk = new String(byteChunk, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        return feed(chunk, isLast, out);
+    }
+
+    /**
+     * Feeds the readable bytes of a {@link DataBuffer}, see {@link #feedBytes(ByteBuffer, boolean, Appendable)}.
+     * The buffer is neither consumed nor released.
+     */
+    public int feedBytes(DataBuffer utf8, boolean isLast, Appendable out) {
+        var count = 0;
+        try (var buffers = utf8.readableByteBuffers()) {
+            while (buffers.hasNext()) {
+                var buffer = buffers.next();
+                count += feedBytes(buffer, isLast && !buffers.hasNext(), out);
             }
-            var feedResult = feedChar(chunk.charAt(i), i == last && isLast);
-            if (feedResult.length > 0) {
-                feedBuffer.append(feedResult);
+        }
+        return count;
+    }
+
+    private void switchInput(boolean bytes) {
+        if (byteInput != bytes) {
+            if (buffering || aborted || inFenceBlock > 0) {
+                throw new IllegalStateException("Input switched between bytes and text inside a JSON candidate");
             }
+            byteInput = bytes;
+            decoder.reset();
         }
-        return feedBuffer.toString();
     }
 
-    private char[] feedChar(char ch, boolean isLast) {
+    private int feed(String chunk, boolean isLast, Appendable out) {
+        output = out;
+        outputCount = 0;
+        candidateStart = -1;
+        fenceStart = -1;
+        replayUntil = 0;
+        scanner.reset(chunk);
         try {
-            if (!buffering) {
-                if (isLast && requiresOutput) {
-                    outBuffer.append(ch);
-                    return returnRemainingBuffer();
-                } else if (ch == '{' || ch == '[') {
-                    buffering = true;
-                    inFenceBlock = 0;
-                    feedCharToParser(ch);
-                    return empty;
-                } else if (inFenceBlock == 0 && ch == '`') {
-                    inFenceBlock++;
-                    outBuffer.append(ch);
-                    return empty;
-                } else if (inFenceBlock > 0 && !buffering) {
-                    outBuffer.append(ch);
-                    String currentOutBufferContent = outBuffer.toString();
-
-                    if (currentOutBufferContent.equals(fenceBlock)) {
-                        buffering = true;
-                        inFenceBlock = 0; // Reset fence block detection state
-                        return empty; // Char consumed as part of the fence block
-                    } else if (fenceBlock.startsWith(currentOutBufferContent)) {
-                        // Partial fence block, continue accumulating
-                        return empty;
-                    } else {
-                        // Not a fence block (e.g., "```x")
-                        // The content of outBuffer should be returned.
-                        inFenceBlock = 0;
-                        return returnRemainingBuffer(); // This will return currentOutBufferContent and clear outBuffer
-                    }
-                } else if (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t') {
-                    // Output whitespace immediately if not in fence block
-                    if (requiresOutput) {
-                        charOutputBuffer[0] = ch;
-                        return charOutputBuffer;
-                    }
-                    return empty;
-                } else {
-                    // Output any buffered text (should only be from fence block logic)
-                    if (outBuffer.length() > 0) {
-                        return returnRemainingBuffer();
-                    }
-                    // Output non-JSON, non-fence, non-whitespace character immediately
-                    if (requiresOutput) {
-                        charOutputBuffer[0] = ch;
-                        return charOutputBuffer;
-                    }
-                    return empty;
-                }
+            feedSegment(chunk, 0, isLast, true, scanner);
+        } finally {
+            output = null;
+        }
+        return outputCount;
+    }
+
+    /**
+     * Runs the text state machine over {@code text} starting at {@code from}.
+     * Each step consumes a run of characters: plain text up to the next candidate,
+     * one fence character, or everything the JSON parser accepted.
+     */
+    private void feedSegment(String text, int from, boolean isLast, boolean stoppable, CandidateScanner scanner) {
+        var length = text.length();
+        var i = from;
+        while (i < length && !(stoppable && shouldStop && i >= replayUntil)) {
+            if (aborted) {
+                i = skipCandidate(text, i);
+            } else if (buffering) {
+                i = feedParser(text, i, isLast);
+            } else if (inFenceBlock > 0) {
+                i = feedFence(text, i, isLast);
             } else {
-                feedCharToParser(ch);
+                i = feedPlain(text, i, isLast, scanner);
             }
-        } catch (IOException e) {
-            // Save the current buffer before reset
-            String remaining = outBuffer.toString();
-            resetParser();
-            return processRemainingBufferAfterError(remaining, isLast);
         }
+    }
 
-        // Only flush outBuffer at the end if not buffering and there's something left
-        if ((isLast || !buffering) && requiresOutput && outBuffer.length() > 0) {
-            return returnRemainingBuffer();
+    private int feedPlain(String text, int i, boolean isLast, CandidateScanner scanner) {
+        var length = text.length();
+        var next = scanner.next(i);
+        if (isLast && next >= length - 1) {
+            // the very last char is always returned as text
+            emit(text, i, length);
+            return length;
+        }
+        if (next > i) {
+            emit(text, i, next);
+            return next;
         }
-        return empty;
+        if (text.charAt(i) == '`') {
+            inFenceBlock = 1;
+            fenceStart = i;
+            return i + 1;
+        }
+        buffering = true;
+        candidateStart = i;
+        return i;
     }
 
-    private char[] returnRemainingBuffer() {
-        if (outBuffer.length() > 0) {
-            var chars = outBuffer.toString().toCharArray();
-            outBuffer.setLength(0);
-            return chars;
+    private int feedFence(String text, int i, boolean isLast) {
+        var ch = text.charAt(i);
+        if (isLast && i == text.length() - 1) {
+            emit(fenceBlock, 0, inFenceBlock);
+            emit(text, i, i + 1);
+            inFenceBlock = 0;
+            return i + 1;
+        }
+        if (ch == '{' || ch == '[') {
+            appendCandidate(fenceBlock, 0, inFenceBlock);
+            inFenceBlock = 0;
+            buffering = true;
+            candidateStart = fenceStart;
+            return i;
+        }
+        if (fenceBlock.charAt(inFenceBlock) == ch) {
+            if (++inFenceBlock == fenceBlock.length()) {
+                appendCandidate(fenceBlock, 0, inFenceBlock);
+                inFenceBlock = 0;
+                buffering = true;
+                candidateStart = fenceStart;
+            }
+            return i + 1;
         }
-        return empty;
+        // Not a fence block (e.g., "```x")
+        emit(fenceBlock, 0, inFenceBlock);
+        emit(text, i, i + 1);
+        inFenceBlock = 0;
+        return i + 1;
     }
 
     /**
-     * TODO: any better approach?
-     *
-     * @param ch
-     * @throws IOException
+     * Feeds the next part of the candidate to the parser at once and returns the index of
+     * the first char which was not consumed by the candidate.
      */
-    private void feedCharToParser(char ch) throws IOException {
-        if (requiresOutput) {
-            outBuffer.append(ch);
+    private int feedParser(String text, int i, boolean isLast) {
+        var length = text.length();
+        var to = length - i > feedWindow ? i + feedWindow : length;
+        if (to < length && Character.isHighSurrogate(text.charAt(to - 1))) {
+            to++;
         }
-        charInputBuffer[0] = ch;
-        reusableCharBuffer.rewind(); // Prepare CharBuffer for reading
-        reusableByteBuffer.clear(); // Prepare ByteBuffer for writing
-
-        var result = encoder.encode(reusableCharBuffer, reusableByteBuffer, true);
-        if (result.isError()) {
-            result.throwException();
+        var end = encoder.encode(text, i, to, byteInput);
+        feedWindow = Math.min(feedWindow << 1, 1 << 20);
+        var input = encoder.input();
+        var byteCount = input.limit();
+        var ascii = byteCount == end - i;
+        var candidateChars = outBuffer.length();
+        try {
+            if (parser == null) {
+                parser = jsonFactory.createNonBlockingByteBufferParser();
+                if (lenient) {
+                    for (var feature : lenientFeatures) {
+                        parser.enable(feature.mappedFeature());
+                    }
+                }
+                inputFeeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            }
+            if ((candidateBytes += byteCount) > limits.maxBytes()) {
+                throw new LimitExceededException(Limit.BYTES);
+            }
+            if (byteCount > 0) {
+                inputFeeder.feedInput(input);
+                ParserMetrics.bytesParsed(byteCount);
+            }
+            if (parseAvailable()) {
+                var consumed = consumedBytes();
+                var completed = i + (ascii ? consumed : CandidateEncoder.charsForBytes(text, i, consumed));
+                appendCandidate(text, i, completed);
+                if (!splitting) {
+                    acceptCandidate();
+                }
+                if (consumed == byteCount) {
+                    // nothing is left in the parser, it can take the next candidate as another root value
+                    parserOffset += byteCount;
+                } else {
+                    closeParser();
+                }
+                resetCandidate();
+                flushCandidate();
+                return completed;
+            }
+            if (encoder.isMissingValue()) {
+                // the parser accepts it when the separator ended its previous input
+                throw new JsonParseException(parser, "Unexpected close marker '}': expected a value");
+            }
+            parserOffset += byteCount;
+            recoveryPoints.convert(text, i, ascii, candidateChars);
+            updateSplitEnd(text, i, ascii, candidateChars);
+            if (partialPending) {
+                acceptPartial();
+            }
+            appendCandidate(text, i, end);
+            if (isLast && end == length) {
+                flushCandidate();
+            }
+            return end;
+        } catch (LimitExceededException e) {
+            abortCandidate(e.limit, text, i, end);
+            return end;
+        } catch (IOException e) {
+            var errorBytes = errorBytes();
+            var errorEnd = i + Math.max(1, ascii ? errorBytes : CandidateEncoder.charsForBytes(text, i, errorBytes));
+            recoveryPoints.convert(text, i, ascii, candidateChars);
+            updateSplitEnd(text, i, ascii, candidateChars);
+            closeParser();
+            return recover(text, i, errorEnd, isLast);
         }
+    }
 
-        if (reusableByteBuffer.position() > 0) {
-            reusableByteBuffer.flip();
-            inputFeeder.feedInput(reusableByteBuffer);
-            parseAvailable();
+    /**
+     * Resumes after a failed candidate from the next '{' or '[' inside it, so JSON nested in
+     * broken text is still found, and returns the index in {@code text} to continue from.
+     * Nested values which were still open at the error are skipped, see {@link RecoveryPoints}.
+     * When the candidate is in this text, it is replayed in place.
+     */
+    private int recover(String text, int i, int errorEnd, boolean isLast) {
+        if (!requiresOutput) {
+            resetCandidate();
+            return errorEnd;
         }
-
-        encoder.reset();
+        // elements which were already consumed are not replayed
+        var from = Math.max(1, splitEnd);
+        if (candidateStart >= 0) {
+            var start = candidateStart;
+            var next = recoveryPoints.next(text, start, start + from, errorEnd);
+            outBuffer.setLength(0);
+            resetCandidate();
+            next = next < 0 ? errorEnd : next;
+            emit(text, start, next);
+            replayUntil = Math.max(replayUntil, errorEnd);
+            return next;
+        }
+        appendCandidate(text, i, errorEnd);
+        var remaining = outBuffer.toString();
+        outBuffer.setLength(0);
+        var next = recoveryPoints.next(remaining, 0, from, remaining.length());
+        resetCandidate();
+        if (next < 0) {
+            emit(remaining, 0, remaining.length());
+            return errorEnd;
+        }
+        emit(remaining, 0, next);
+        var replayScanner = new CandidateScanner();
+        replayScanner.reset(remaining);
+        feedSegment(remaining, next, isLast && errorEnd == text.length(), false, replayScanner);
+        candidateStart = -1;
+        fenceStart = -1;
+        return errorEnd;
     }
 
-    private void parseAvailable() throws IOException {
+    private boolean parseAvailable() throws IOException {
         var token = parser.nextToken();
         while (token != null && token != JsonToken.NOT_AVAILABLE) {
-            tokenBuffer.copyCurrentEvent(parser);
             switch (token) {
                 case START_OBJECT:
                 case START_ARRAY:
-                    depth++;
+                    if (depth == limits.maxDepth()) {
+                        throw new LimitExceededException(Limit.DEPTH);
+                    }
+                    if (depth > 0 && requiresOutput) {
+                        // the async parser reports the location after the bracket
+                        recoveryPoints.open((int) (parser.currentTokenLocation().getByteOffset() - parserOffset) - 1);
+                    }
+                    if (depth++ == 0 && streamElements && token == JsonToken.START_ARRAY) {
+                        // the root array itself is not buffered, only its current element
+                        splitting = true;
+                        break;
+                    }
+                    copyCurrentEvent();
                     break;
                 case END_OBJECT:
                 case END_ARRAY:
                     depth--;
+                    if (depth > 0 && requiresOutput) {
+                        recoveryPoints.close();
+                    }
                     if (depth == 0) {
-                        if (jsonConsumer != null) {
-                            try {
-                                jsonConsumer.accept(objectMapper.readTree(tokenBuffer.asParser()));
-                            } catch (JsonProcessingException e) {
-                                // Skip malformed JSON
-                            }
+                        if (!splitting) {
+                            copyCurrentEvent();
                         }
-                        resetParser();
-                        return;
+                        return true;
+                    }
+                    copyCurrentEvent();
+                    if (depth == partialDepth) {
+                        markPartial();
                     }
+                    if (splitting && depth == 1) {
+                        acceptElement();
+                    }
+                    break;
+                case FIELD_NAME:
+                    copyCurrentEvent();
                     break;
                 default:
+                    copyCurrentEvent();
+                    if (depth <= partialDepth) {
+                        markPartial();
+                    }
+                    if (splitting && depth == 1) {
+                        acceptElement();
+                    }
                     break;
             }
             token = parser.nextToken();
         }
+        return false;
+    }
+
+    private void copyCurrentEvent() throws IOException {
+        if (tokenCount == limits.maxTokens()) {
+            throw new LimitExceededException(Limit.TOKENS);
+        }
+        tokenBuffer.copyCurrentEvent(parser);
+        tokenCount++;
+    }
+
+    /**
+     * Flushes the candidate as text, if it is not closed yet the rest of it is skipped as text too.
+     */
+    private void abortCandidate(Limit limit, String text, int i, int end) {
+        ParserMetrics.candidateAborted(limit);
+        appendCandidate(text, i, end);
+        flushCandidate();
+        closeParser();
+        if (encoder.isOpen()) {
+            resetTokens();
+            aborted = true;
+        } else {
+            resetCandidate();
+        }
+    }
+
+    private int skipCandidate(String text, int i) {
+        var end = encoder.skip(text, i);
+        emit(text, i, end);
+        if (!encoder.isOpen()) {
+            resetCandidate();
+        }
+        return end;
+    }
+
+    private void acceptElement() throws IOException {
+        acceptCandidate();
+        elementBytes = consumedBytes();
+        partialPending = false;
+        tokenCount = 0;
+        tokenBuffer = new TokenBuffer(objectMapper, false);
+    }
+
+    /**
+     * Remembers where the last consumed element of a split array ends in the candidate text.
+     */
+    private void updateSplitEnd(String text, int i, boolean ascii, int candidateChars) {
+        if (elementBytes >= 0) {
+            splitEnd = candidateChars + (ascii ? elementBytes : CandidateEncoder.charsForBytes(text, i, elementBytes));
+            elementBytes = -1;
+        }
+    }
+
+    private void acceptCandidate() throws IOException {
+        if (valueConsumer != null && bindElements) {
+            acceptEach();
+        } else if (valueConsumer != null) {
+            try {
+                valueConsumer.accept(valueReader.readValue(tokenBuffer.asParser()));
+            } catch (JsonProcessingException e) {
+                // Skip malformed JSON
+            }
+        }
+    }
+
+    private void acceptEach() throws IOException {
+        var tokens = tokenBuffer.asParser();
+        if (tokens.nextToken() == JsonToken.START_ARRAY) {
+            // the iterator reads the values of the container of the token it starts at
+            tokens.nextToken();
+        }
+        try (MappingIterator<Object> values = valueReader.readValues(tokens)) {
+            // a failed element is skipped to its end, the iterator goes on with the next one
+            while (values.hasNextValue()) {
+                try {
+                    valueConsumer.accept(values.nextValue());
+                } catch (JsonProcessingException e) {
+                    // Skip an element which can't be bound
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Skip malformed JSON
+        }
     }
 
-    private boolean findPartialFenceBlockStart() {
-        int tagLen = fenceBlock.length();
-        int bufferLen = outBuffer.length();
-        int fenceIndex = outBuffer.indexOf("`", 0);
-        int end = Math.min(bufferLen, tagLen);
-        return fenceBlock.startsWith(outBuffer.substring(fenceIndex, end));
+    private void markPartial() {
+        partialPending = true;
+        partialTokens = tokenCount;
     }
 
-    private char[] processRemainingBufferAfterError(String remaining, boolean isLast) {
-        int nextObj = remaining.indexOf('{', 1);
-        int nextArr = remaining.indexOf('[', 1);
-        int nextJsonStart = (nextObj >= 0 && nextArr >= 0) ? Math.min(nextObj, nextArr)
-                : (nextObj >= 0 ? nextObj : nextArr);
+    private void acceptPartial() {
+        partialPending = false;
+        if (partialConsumer == null) {
+            return;
+        }
+        try {
+            var snapshot = new TokenBuffer(objectMapper, false);
+            try (var tokens = tokenBuffer.asParser()) {
+                // tokens after the last completed value (e.g. a field name) are left out
+                for (var n = 0; n < partialTokens && tokens.nextToken() != null; n++) {
+                    snapshot.copyCurrentEvent(tokens);
+                }
+            }
+            for (var context = snapshot.getOutputContext(); !context.inRoot(); context = snapshot.getOutputContext()) {
+                if (context.inObject()) {
+                    snapshot.writeEndObject();
+                } else {
+                    snapshot.writeEndArray();
+                }
+            }
+            partialConsumer.accept(partialReader.readValue(snapshot.asParser()));
+        } catch (IOException e) {
+            // Skip snapshots which can't be bound
+        }
+    }
 
-        if (nextJsonStart >= 0 && nextJsonStart < remaining.length()) {
-            outBuffer.setLength(0); // Clear output buffer
+    private int consumedBytes() {
+        return (int) (parser.currentLocation().getByteOffset() - parserOffset);
+    }
 
-            var prefixStr = (requiresOutput && nextJsonStart > 0)
-                    ? remaining.substring(0, nextJsonStart)
-                    : "";
-            var restStr = remaining.substring(nextJsonStart);
+    /**
+     * Returns the number of bytes up to and including the one which caused the error.
+     * Usually it is the last consumed byte, but the parser may stop before a lexically
+     * invalid byte (e.g. it peeks the char after a leading '0' without consuming it),
+     * then the scan of the encoder has the error.
+     */
+    private int errorBytes() {
+        var consumed = consumedBytes();
+        var errorByte = encoder.errorByte();
+        return errorByte >= consumed ? errorByte + 1 : consumed;
+    }
 
-            var resultBuilder = new StringBuilder();
-            for (int i = 0; i < restStr.length(); i++) {
-                boolean lastChar = isLast && i == restStr.length() - 1;
-                char[] processed = feedChar(restStr.charAt(i), lastChar);
-                if (processed.length > 0) {
-                    resultBuilder.append(processed);
+    private void emit(CharSequence text, int start, int end) {
+        if (requiresOutput && end > start && output != null) {
+            try {
+                if (byteInput) {
+                    outputCount += decoder.decode(text, start, end, output);
+                } else {
+                    output.append(text, start, end);
+                    outputCount += end - start;
                 }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }
+    }
 
-            return (prefixStr + resultBuilder).toCharArray();
+    private void appendCandidate(CharSequence text, int start, int end) {
+        if (requiresOutput && end > start) {
+            outBuffer.append(text, start, end);
         }
+    }
 
-        if (requiresOutput && !remaining.isEmpty()) {
+    private void flushCandidate() {
+        if (outBuffer.length() > 0) {
+            emit(outBuffer, 0, outBuffer.length());
             outBuffer.setLength(0);
-            return remaining.toCharArray();
         }
-
-        outBuffer.setLength(0);
-        return empty;
     }
 
-    private void resetParser() {
+    private void resetCandidate() {
         buffering = false;
+        aborted = false;
+        candidateBytes = 0;
+        inFenceBlock = 0;
+        encoder.reset();
+        feedWindow = initialWindow;
+        resetTokens();
+    }
+
+    private void resetTokens() {
         depth = 0;
+        recoveryPoints.reset();
+        partialPending = false;
+        tokenCount = 0;
+        splitting = false;
+        elementBytes = -1;
+        splitEnd = 0;
         tokenBuffer = new TokenBuffer(objectMapper, false);
-        inFenceBlock = 0;
-        try {
-            if (parser != null) {
-                // TODO: any better approach to avoid recreating the parser?
+    }
+
+    private void closeParser() {
+        if (parser != null) {
+            try {
                 inputFeeder.endOfInput();
                 parser.close();
+            } catch (IOException ignored) {
             }
-            parser = jsonFactory.createNonBlockingByteBufferParser();
-            inputFeeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to reset parser", e);
+            parser = null;
+            inputFeeder = null;
+            parserOffset = 0;
         }
     }
 }
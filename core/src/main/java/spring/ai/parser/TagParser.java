@@ -0,0 +1,332 @@
+package spring.ai.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import spring.ai.agents.Agent.Event;
+
+import static spring.ai.agents.Utils.*;
+
+/**
+ * Splits a stream of chunks into payloads by tags, e.g. {@code <think>...</think>} into
+ * thinking, {@code <answer>...</answer>} into text, or harmony-style channel markers.
+ * All open and close tags are compiled into one Aho–Corasick automaton, so every char is
+ * scanned once no matter how many tags are registered. A partial tag at the end of a chunk
+ * is carried over in the automaton state, and the consumed prefix of the buffer is skipped
+ * by an offset instead of being deleted.
+ */
+public class TagParser {
+
+    public enum Type {
+        // content is emitted as text as it streams, the tags are removed
+        TEXT,
+        // content is emitted as thinking, the close tag ends the thinking block
+        THINKING,
+        // content is held until the close tag and emitted as a single text, so tool call parsers see it whole
+        TOOL_CALL
+    }
+
+    public record Tag(String open, String close, Type type) {
+        public static final Tag THINK = new Tag("<think>", "</think>", Type.THINKING);
+
+        public Tag {
+            if (open == null || open.isEmpty() || close == null || close.isEmpty()) {
+                throw new IllegalArgumentException("Tag requires open and close strings");
+            }
+            type = type != null ? type : Type.THINKING;
+        }
+    }
+
+    // the consumed prefix is removed once it is larger than this and than the rest
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final List<Tag> tags;
+    private final Automaton automaton;
+
+    private final StringBuilder buffer = new StringBuilder(1024);
+    // index of the open tag, -1 outside of tags
+    private int active = -1;
+    // first char which was not emitted yet
+    private int start = 0;
+    // chars before this index were scanned, the automaton is in this state after them
+    private int scanned = 0;
+    private int state = 0;
+    private int matchedTag = -1;
+
+    public TagParser(List<Tag> tags) {
+        this.tags = List.copyOf(tags);
+        this.automaton = new Automaton(this.tags);
+    }
+
+    private TagParser(List<Tag> tags, Automaton automaton) {
+        this.tags = tags;
+        this.automaton = automaton;
+    }
+
+    /**
+     * Returns a parser with empty state for another stream, which shares the compiled tags.
+     */
+    public TagParser newParser() {
+        return new TagParser(tags, automaton);
+    }
+
+    public Event.Payload acceptChunk(String chunk, boolean isLast) {
+        if (chunk != null && !chunk.isEmpty()) {
+            buffer.append(chunk);
+        }
+        if (isLast) {
+            return this.flush();
+        }
+        // If chunk is null or empty, emit what is available (if any)
+        var payload = processBuffer();
+        compact();
+        return payload;
+    }
+
+    private Event.Payload processBuffer() {
+        var tagEnd = findTag();
+        if (active < 0) {
+            if (tagEnd < 0) {
+                // No open tag found, a partial tag at the end is kept
+                return newTextEvent(take(scanned - automaton.partialTag(state, active)), false);
+            }
+            var tag = matchedTag;
+            var tagStart = tagEnd - tags.get(tag).open().length();
+            // Emit text before the open tag, the tag is scanned again by the next call
+            if (tagStart > start) {
+                var text = take(tagStart);
+                rescanFrom(tagStart);
+                return newTextEvent(text, false);
+            }
+            // Skip the open tag itself and process the content
+            rescanFrom(tagEnd);
+            active = tag;
+            return processBuffer();
+        }
+        var type = tags.get(active).type();
+        if (tagEnd < 0) {
+            if (type == Type.TOOL_CALL) {
+                return newTextEvent(null, false);
+            }
+            // No close tag found, a partial close tag at the end is kept
+            return payload(type, take(scanned - automaton.partialTag(state, active)), false);
+        }
+        var text = take(tagEnd - tags.get(active).close().length());
+        rescanFrom(tagEnd);
+        active = -1;
+        return payload(type, text, true);
+    }
+
+    private static Event.Payload payload(Type type, String text, boolean closed) {
+        // only the end of thinking is marked, the last text marks the end of the stream
+        return type == Type.THINKING ? newThinkingEvent(text, closed) : newTextEvent(text, false);
+    }
+
+    /**
+     * Continues the scan where the previous one stopped, returns the index after the open
+     * tag (outside of tags) or the close tag of the active tag, or -1.
+     */
+    private int findTag() {
+        var length = buffer.length();
+        var i = scanned;
+        var s = state;
+        while (i < length) {
+            s = automaton.next(s, buffer.charAt(i++));
+            if (automaton.outputs[s] != null && (matchedTag = automaton.match(s, active)) >= 0) {
+                scanned = i;
+                state = 0;
+                return i;
+            }
+        }
+        scanned = i;
+        state = s;
+        return -1;
+    }
+
+    /**
+     * Returns the chars from the start up to {@code end} or null if there are none,
+     * and moves the start there.
+     */
+    private String take(int end) {
+        if (end <= start) {
+            return null;
+        }
+        var text = buffer.substring(start, end);
+        start = end;
+        return text;
+    }
+
+    private void rescanFrom(int index) {
+        start = index;
+        scanned = index;
+        state = 0;
+    }
+
+    private void compact() {
+        if (start == buffer.length()) {
+            buffer.setLength(0);
+            scanned -= start;
+            start = 0;
+        } else if (start > COMPACT_THRESHOLD && start > buffer.length() - start) {
+            buffer.delete(0, start);
+            scanned -= start;
+            start = 0;
+        }
+    }
+
+    public Event.Payload flush() {
+        var text = buffer.length() > start ? buffer.substring(start) : null;
+        var result = active >= 0 && tags.get(active).type() == Type.THINKING ? newThinkingEvent(text, true)
+                : newTextEvent(text, true);
+        buffer.setLength(0);
+        start = 0;
+        scanned = 0;
+        state = 0;
+        active = -1;
+        return result;
+    }
+
+    /**
+     * Aho–Corasick automaton of all open and close tags, with a full transition table over
+     * the chars of the tags. Chars which are not in any tag lead back to the root.
+     */
+    private static final class Automaton {
+        private final int[] asciiClass = new int[128];
+        // sorted non ASCII chars of the tags, their classes follow the ASCII ones
+        private final char[] otherChars;
+        private final int otherBase;
+        private final int[][] transitions;
+        private final int[] failure;
+        // length of the tag prefix which ends in the state
+        private final int[] depth;
+        // the state is a prefix of an open tag, or states along the close tag of each tag
+        private final boolean[] openPrefix;
+        private final int[][] closePaths;
+        // tags whose open (tag index) or close (-1 - tag index) ends in the state, longest first
+        private final int[][] outputs;
+
+        Automaton(List<Tag> tags) {
+            var classes = 1;
+            var other = new StringBuilder();
+            for (var tag : tags) {
+                for (var ch : (tag.open() + tag.close()).toCharArray()) {
+                    if (ch < 128 && asciiClass[ch] == 0) {
+                        asciiClass[ch] = classes++;
+                    } else if (ch >= 128 && other.indexOf(String.valueOf(ch)) < 0) {
+                        other.append(ch);
+                    }
+                }
+            }
+            otherChars = other.toString().toCharArray();
+            Arrays.sort(otherChars);
+            otherBase = classes;
+            classes += otherChars.length;
+            // trie of the tags, then failure links in breadth first order
+            var trie = new ArrayList<int[]>();
+            var depths = new ArrayList<Integer>();
+            var ends = new ArrayList<List<Integer>>();
+            trie.add(new int[classes]);
+            depths.add(0);
+            ends.add(new ArrayList<>());
+            var openStates = new ArrayList<Integer>();
+            closePaths = new int[tags.size()][];
+            for (int t = 0; t < tags.size(); t++) {
+                for (int p = 0; p < 2; p++) {
+                    var pattern = p == 0 ? tags.get(t).open() : tags.get(t).close();
+                    var path = new int[pattern.length() + 1];
+                    var s = 0;
+                    for (int k = 0; k < pattern.length(); k++) {
+                        var c = classOf(pattern.charAt(k));
+                        if (trie.get(s)[c] == 0) {
+                            trie.get(s)[c] = trie.size();
+                            trie.add(new int[classes]);
+                            depths.add(depths.get(s) + 1);
+                            ends.add(new ArrayList<>());
+                        }
+                        s = trie.get(s)[c];
+                        path[k + 1] = s;
+                        if (p == 0) {
+                            openStates.add(s);
+                        }
+                    }
+                    ends.get(s).add(p == 0 ? t : -1 - t);
+                    if (p == 1) {
+                        closePaths[t] = path;
+                    }
+                }
+            }
+            var states = trie.size();
+            transitions = trie.toArray(new int[0][]);
+            depth = new int[states];
+            outputs = new int[states][];
+            openPrefix = new boolean[states];
+            for (var s : openStates) {
+                openPrefix[s] = true;
+            }
+            failure = new int[states];
+            var queue = new ArrayDeque<Integer>();
+            queue.add(0);
+            while (!queue.isEmpty()) {
+                var s = queue.poll();
+                depth[s] = depths.get(s);
+                var found = new ArrayList<>(ends.get(s));
+                if (s != 0 && outputs[failure[s]] != null) {
+                    for (var t : outputs[failure[s]]) {
+                        found.add(t);
+                    }
+                }
+                outputs[s] = found.isEmpty() ? null : found.stream().mapToInt(Integer::intValue).toArray();
+                for (int c = 1; c < classes; c++) {
+                    var child = transitions[s][c];
+                    if (child != 0) {
+                        failure[child] = s == 0 ? 0 : transitions[failure[s]][c];
+                        queue.add(child);
+                    } else {
+                        transitions[s][c] = s == 0 ? 0 : transitions[failure[s]][c];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the length of the longest suffix of the scanned text in the state, which
+         * may still become an open tag (outside of tags) or the close tag of the active one.
+         */
+        int partialTag(int state, int active) {
+            for (var s = state; s != 0; s = failure[s]) {
+                var d = depth[s];
+                if (active < 0 ? openPrefix[s] : d < closePaths[active].length && closePaths[active][d] == s) {
+                    return d;
+                }
+            }
+            return 0;
+        }
+
+        int next(int state, char ch) {
+            return transitions[state][classOf(ch)];
+        }
+
+        /**
+         * Returns the index of the tag whose open (outside of tags) or close (of the active
+         * tag) ends in the state, or -1.
+         */
+        int match(int state, int active) {
+            for (var t : outputs[state]) {
+                if (active < 0 ? t >= 0 : t == -1 - active) {
+                    return active < 0 ? t : active;
+                }
+            }
+            return -1;
+        }
+
+        private int classOf(char ch) {
+            if (ch < 128) {
+                return asciiClass[ch];
+            }
+            var index = Arrays.binarySearch(otherChars, ch);
+            return index < 0 ? 0 : otherBase + index;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package spring.ai.parser;
+
+import java.io.IOException;
+
+/**
+ * Decodes UTF-8 bytes, given as Latin-1 chars, to text. A sequence which is split between
+ * two inputs is completed with the next one. Invalid sequences are replaced with U+FFFD.
+ */
+final class Utf8Decoder {
+
+    private int code = 0;
+    // continuation bytes the current sequence still needs
+    private int needed = 0;
+
+    /**
+     * Appends the decoded bytes[start, end) to {@code out}, ASCII runs as they are.
+     * Returns the number of chars appended.
+     */
+    int decode(CharSequence bytes, int start, int end, Appendable out) throws IOException {
+        var count = 0;
+        var i = start;
+        while (i < end) {
+            var b = bytes.charAt(i);
+            if (b < 0x80 && needed == 0) {
+                var run = i + 1;
+                while (run < end && bytes.charAt(run) < 0x80) {
+                    run++;
+                }
+                out.append(bytes, i, run);
+                count += run - i;
+                i = run;
+                continue;
+            }
+            i++;
+            if (needed > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    code = (code << 6) | (b & 0x3F);
+                    if (--needed == 0) {
+                        count += appendCodePoint(code, out);
+                    }
+                    continue;
+                }
+                // truncated sequence, the byte starts a new one
+                needed = 0;
+                count += appendCodePoint(0xFFFD, out);
+            }
+            if (b < 0x80) {
+                i--;
+            } else if ((b & 0xE0) == 0xC0) {
+                code = b & 0x1F;
+                needed = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                code = b & 0x0F;
+                needed = 2;
+            } else if ((b & 0xF8) == 0xF0) {
+                code = b & 0x07;
+                needed = 3;
+            } else {
+                count += appendCodePoint(0xFFFD, out);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drops a sequence which is not completed, e.g. when the input switches to text.
+     */
+    void reset() {
+        needed = 0;
+    }
+
+    private static int appendCodePoint(int codePoint, Appendable out) throws IOException {
+        if (Character.isBmpCodePoint(codePoint)) {
+            out.append((char) codePoint);
+            return 1;
+        } else if (Character.isValidCodePoint(codePoint)) {
+            out.append(Character.highSurrogate(codePoint)).append(Character.lowSurrogate(codePoint));
+            return 2;
+        }
+        out.append('\uFFFD');
+        return 1;
+    }
+}
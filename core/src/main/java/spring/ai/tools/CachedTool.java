@@ -0,0 +1,37 @@
+package spring.ai.tools;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of a read-only {@code @Tool} method by its arguments. The results are
+ * cached per tool object the callbacks are created for, unless {@link #shared()}.
+ * Identical calls which run at the same time share one call.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CachedTool {
+
+    /**
+     * How long a result is cached after the call completes.
+     */
+    long ttl() default 5;
+
+    TimeUnit unit() default TimeUnit.MINUTES;
+
+    /**
+     * Max cached results, the least recently used ones are evicted.
+     */
+    int maxEntries() default 256;
+
+    /**
+     * Whether the results are shared by all instances of the tool class. Only for tools whose
+     * results don't depend on the state of the instance, e.g. its configuration or credentials.
+     */
+    boolean shared() default false;
+}
@@ -45,8 +45,18 @@ public class ReactiveMethodToolCallback implements ReactiveToolCallback {
 
 	private final ToolCallResultConverter toolCallResultConverter;
 
+	// per tool object, or shared by the instances of the tool class with @CachedTool(shared = true), null if results are not cached
+	@Nullable
+	private final ToolResultCache resultCache;
+
 	public ReactiveMethodToolCallback(ToolDefinition toolDefinition, @Nullable ToolMetadata toolMetadata, Method toolMethod,
 			@Nullable Object toolObject, @Nullable ToolCallResultConverter toolCallResultConverter) {
+		this(toolDefinition, toolMetadata, toolMethod, toolObject, toolCallResultConverter, null);
+	}
+
+	public ReactiveMethodToolCallback(ToolDefinition toolDefinition, @Nullable ToolMetadata toolMetadata, Method toolMethod,
+			@Nullable Object toolObject, @Nullable ToolCallResultConverter toolCallResultConverter,
+			@Nullable ToolResultCache resultCache) {
 		Assert.notNull(toolDefinition, "toolDefinition cannot be null");
 		Assert.notNull(toolMethod, "toolMethod cannot be null");
 		Assert.isTrue(Modifier.isStatic(toolMethod.getModifiers()) || toolObject != null,
@@ -57,6 +67,7 @@ public class ReactiveMethodToolCallback implements ReactiveToolCallback {
 		this.toolObject = toolObject;
 		this.toolCallResultConverter = toolCallResultConverter != null ? toolCallResultConverter
 				: DEFAULT_RESULT_CONVERTER;
+		this.resultCache = resultCache;
 	}
 
 	@Override
@@ -94,6 +105,14 @@ public class ReactiveMethodToolCallback implements ReactiveToolCallback {
 
         Map<String, Object> toolArguments = extractToolArguments(toolInput);
 
+        if (resultCache != null && (toolContext == null || CollectionUtils.isEmpty(toolContext.getContext()))) {
+            return ToolCallEvent.record(toolDefinition.name(), () -> resultCache.get(ToolResultCache.key(toolDefinition.name(), toolArguments),
+                    () -> invoke(toolArguments, toolContext)));
+        }
+        return ToolCallEvent.record(toolDefinition.name(), () -> invoke(toolArguments, toolContext));
+    }
+
+    private Mono<String> invoke(Map<String, Object> toolArguments, @Nullable ToolContext toolContext) {
         Object[] methodArguments = buildMethodArguments(toolArguments, toolContext);
 
         Object result = callMethod(methodArguments);
@@ -198,6 +217,8 @@ public class ReactiveMethodToolCallback implements ReactiveToolCallback {
 
 		private ToolCallResultConverter toolCallResultConverter;
 
+		private ToolResultCache resultCache;
+
 		private Builder() {
 		}
 
@@ -226,9 +247,14 @@ public class ReactiveMethodToolCallback implements ReactiveToolCallback {
 			return this;
 		}
 
+		public Builder resultCache(ToolResultCache resultCache) {
+			this.resultCache = resultCache;
+			return this;
+		}
+
 		public ReactiveMethodToolCallback build() {
 			return new ReactiveMethodToolCallback(toolDefinition, toolMetadata, toolMethod, toolObject,
-					toolCallResultConverter);
+					toolCallResultConverter, resultCache);
 		}
 
 	}
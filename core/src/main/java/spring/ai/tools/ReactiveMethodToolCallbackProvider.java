@@ -12,6 +12,7 @@ import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
 import org.springframework.ai.tool.metadata.ToolMetadata;
 import org.springframework.ai.tool.util.ToolUtils;
 import org.springframework.aop.support.AopUtils;
@@ -23,6 +24,37 @@ import reactor.core.publisher.Mono;
 
 public class ReactiveMethodToolCallbackProvider implements ToolCallbackProvider {
 
+	// the tool methods of a class with their definitions, an instance binds to them without reflection
+	private static final ClassValue<List<ToolMethod>> TOOL_METHODS = new ClassValue<>() {
+		@Override
+		protected List<ToolMethod> computeValue(Class<?> type) {
+			return Stream.of(ReflectionUtils.getDeclaredMethods(type))
+				.filter(toolMethod -> toolMethod.isAnnotationPresent(Tool.class))
+				.filter(toolMethod -> isReactiveReturnType(toolMethod))
+				.map(toolMethod -> new ToolMethod(toolMethod, ToolDefinition.from(toolMethod), ToolMetadata.from(toolMethod),
+						ToolUtils.getToolCallResultConverter(toolMethod), toolMethod.getAnnotation(CachedTool.class)))
+				.toList();
+		}
+	};
+
+	private record ToolMethod(Method method, ToolDefinition toolDefinition, ToolMetadata toolMetadata,
+			ToolCallResultConverter toolCallResultConverter, CachedTool cached, ToolResultCache sharedCache) {
+
+		ToolMethod(Method method, ToolDefinition toolDefinition, ToolMetadata toolMetadata,
+				ToolCallResultConverter toolCallResultConverter, CachedTool cached) {
+			this(method, toolDefinition, toolMetadata, toolCallResultConverter, cached,
+					cached != null && cached.shared() ? ToolResultCache.from(cached) : null);
+		}
+
+		// the results of a tool object are cached apart from the other instances, unless shared
+		ToolResultCache resultCache() {
+			if (cached == null) {
+				return null;
+			}
+			return cached.shared() ? sharedCache : ToolResultCache.from(cached);
+		}
+	}
+
 	private final List<Object> toolObjects;
 
 	 public ReactiveMethodToolCallbackProvider(List<Object> toolObjects) {
@@ -34,17 +66,16 @@ public class ReactiveMethodToolCallbackProvider implements ToolCallbackProvider
     @Override
     public ReactiveMethodToolCallback[] getToolCallbacks() {
         var toolCallbacks = toolObjects.stream()
-			.map(toolObject -> Stream
-				.of(ReflectionUtils.getDeclaredMethods(
-						AopUtils.isAopProxy(toolObject) ? AopUtils.getTargetClass(toolObject) : toolObject.getClass()))
-				.filter(toolMethod -> toolMethod.isAnnotationPresent(Tool.class))
-				.filter(toolMethod -> isReactiveReturnType(toolMethod))
+			.map(toolObject -> TOOL_METHODS
+				.get(AopUtils.isAopProxy(toolObject) ? AopUtils.getTargetClass(toolObject) : toolObject.getClass())
+				.stream()
 				.map(toolMethod -> ReactiveMethodToolCallback.builder()
-					.toolDefinition(ToolDefinition.from(toolMethod))
-					.toolMetadata(ToolMetadata.from(toolMethod))
-					.toolMethod(toolMethod)
+					.toolDefinition(toolMethod.toolDefinition())
+					.toolMetadata(toolMethod.toolMetadata())
+					.toolMethod(toolMethod.method())
 					.toolObject(toolObject)
-					.toolCallResultConverter(ToolUtils.getToolCallResultConverter(toolMethod))
+					.toolCallResultConverter(toolMethod.toolCallResultConverter())
+					.resultCache(toolMethod.resultCache())
 					.build())
 				.toArray(ReactiveMethodToolCallback[]::new))
 			.flatMap(Stream::of)
@@ -55,7 +86,7 @@ public class ReactiveMethodToolCallbackProvider implements ToolCallbackProvider
 		return toolCallbacks;
     }
 
-    private boolean isReactiveReturnType(Method method) {
+    private static boolean isReactiveReturnType(Method method) {
         Class<?> returnType = method.getReturnType();
         return ClassUtils.isAssignable(Mono.class, returnType);
     }
@@ -0,0 +1,66 @@
+package spring.ai.tools;
+
+import java.util.function.Supplier;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import reactor.core.publisher.Mono;
+
+/**
+ * JDK Flight Recorder event of a tool call, from the call of the tool method to its result,
+ * error or cancellation, disabled unless the recording settings enable it.
+ */
+@Name("spring.ai.ToolCall")
+@Label("Tool Call")
+@Description("A reactive tool call from its start to its end")
+@Category({"Spring AI", "Tools"})
+@StackTrace(false)
+@Enabled(false)
+public class ToolCallEvent extends Event {
+
+    @Label("Tool")
+    String tool;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Result Length")
+    int resultLength;
+
+    /**
+     * Begins the event before the call, as a tool method runs when its {@link Mono} is created.
+     */
+    static Mono<String> record(String tool, Supplier<Mono<String>> call) {
+        var event = new ToolCallEvent();
+        if (!event.isEnabled()) {
+            return call.get();
+        }
+        event.begin();
+        Mono<String> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            event.end(tool, "error", 0);
+            throw e;
+        }
+        return result
+            .doOnSuccess(value -> event.end(tool, "success", value != null ? value.length() : 0))
+            .doOnError(e -> event.end(tool, "error", 0))
+            .doOnCancel(() -> event.end(tool, "cancel", 0));
+    }
+
+    private void end(String tool, String outcome, int resultLength) {
+        end();
+        if (shouldCommit()) {
+            this.tool = tool;
+            this.outcome = outcome;
+            this.resultLength = resultLength;
+            commit();
+        }
+    }
+}
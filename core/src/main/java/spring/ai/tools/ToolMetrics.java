@@ -0,0 +1,50 @@
+package spring.ai.tools;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide counters of the tool result caches.
+ */
+public final class ToolMetrics {
+
+    private static final LongAdder cacheHits = new LongAdder();
+    private static final LongAdder cacheMisses = new LongAdder();
+    private static final LongAdder cacheEvictions = new LongAdder();
+
+    private ToolMetrics() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Returns the number of calls which got a cached result or joined an identical call in flight.
+     */
+    public static long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns the number of calls of cached tools which ran the tool.
+     */
+    public static long cacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Returns the number of results which were evicted because the cache was full.
+     */
+    public static long cacheEvictions() {
+        return cacheEvictions.sum();
+    }
+
+    static void cacheHit() {
+        cacheHits.increment();
+    }
+
+    static void cacheMiss() {
+        cacheMisses.increment();
+    }
+
+    static void cacheEviction() {
+        cacheEvictions.increment();
+    }
+}
@@ -0,0 +1,109 @@
+package spring.ai.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * LRU cache of tool results with a TTL, keyed by the tool name and the canonical JSON of
+ * the arguments. A call is cached as soon as it starts, so identical calls in flight share
+ * its {@link Mono}. Failed calls are not cached.
+ */
+public class ToolResultCache {
+
+    // the same arguments in any order have the same key
+    private static final ObjectMapper canonicalMapper = JsonMapper.builder()
+        .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+        .build();
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public ToolResultCache(long ttlNanos, int maxEntries) {
+        this.ttlNanos = ttlNanos;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ToolResultCache.this.maxEntries) {
+                    ToolMetrics.cacheEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static ToolResultCache from(CachedTool annotation) {
+        return new ToolResultCache(annotation.unit().toNanos(annotation.ttl()), annotation.maxEntries());
+    }
+
+    public static String key(String toolName, Map<String, Object> arguments) {
+        try {
+            return toolName + ":" + canonicalMapper.writeValueAsString(arguments);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Returns the cached or in flight result of the key, or calls the tool.
+     */
+    public Mono<String> get(String key, Supplier<Mono<String>> call) {
+        synchronized (entries) {
+            var entry = entries.get(key);
+            if (entry != null && entry.done && entry.expiresAt - System.nanoTime() <= 0) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry != null) {
+                ToolMetrics.cacheHit();
+                return entry.result;
+            }
+            ToolMetrics.cacheMiss();
+            var created = new Entry();
+            created.result = Mono.defer(call)
+                .doOnSuccess(result -> {
+                    created.expiresAt = System.nanoTime() + ttlNanos;
+                    created.done = true;
+                })
+                .doOnError(e -> remove(key, created))
+                .cache();
+            entries.put(key, created);
+            return created.result;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private static final class Entry {
+        Mono<String> result;
+        volatile long expiresAt;
+        // false while the call is in flight
+        volatile boolean done;
+    }
+}
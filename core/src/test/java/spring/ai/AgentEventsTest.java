@@ -0,0 +1,129 @@
+package spring.ai;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.annotation.Tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.base.BaseAgent;
+import spring.ai.tools.ReactiveToolCallbacks;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgentEventsTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * A model which calls the tool in its first turn, then answers.
+     */
+    private static ScriptedChatModel toolModel() {
+        return new ScriptedChatModel((turn, prompt) -> {
+            var text = turn == 1 ? "{\"id\": \"p1\", \"name\": \"ping\", \"arguments\": {\"host\": \"a\"}}" : "Done";
+            return List.of(ScriptedChatModel.chunk(text.substring(0, 2)), ScriptedChatModel.chunk(text.substring(2)), ScriptedChatModel.last(""));
+        });
+    }
+
+    public static class PingAgent extends BaseAgent {
+        PingAgent(ChatModel model) {
+            super(ChatClient.create(model), new ObjectMapper());
+        }
+
+        @Tool(description = "Pings the host")
+        public Mono<String> ping(String host) {
+            return Mono.delay(Duration.ofMillis(20)).thenReturn("pong");
+        }
+    }
+
+    public static class BlockingTools {
+        @Tool(description = "Resolves the host before it returns")
+        public Mono<String> resolve(String host) throws InterruptedException {
+            Thread.sleep(30);
+            return Mono.just("127.0.0.1");
+        }
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+    }
+
+    @Test
+    void testPipelineEvents() throws Exception {
+        var agent = new PingAgent(toolModel());
+        var file = directory.resolve("agent.jfr");
+        try (var recording = new Recording()) {
+            for (var name : List.of("spring.ai.Chunk", "spring.ai.Parse", "spring.ai.FuncCall", "spring.ai.ToolCall")) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            agent.<Payload>stream(new Prompt("ping")).blockLast(Duration.ofSeconds(10));
+            recording.stop();
+            recording.dump(file);
+        }
+        var events = RecordingFile.readAllEvents(file);
+
+        // the tool turn stops at the call
+        assertEquals(2 + 3, events(events, "spring.ai.Chunk").size());
+        assertTrue(events(events, "spring.ai.Chunk").stream().anyMatch(e -> e.getBoolean("last")));
+        var parsers = events(events, "spring.ai.Parse").stream().map(e -> e.getString("parser")).distinct().sorted().toList();
+        assertEquals(List.of("think", "tool-call"), parsers);
+        var calls = events(events, "spring.ai.FuncCall");
+        assertEquals(1, calls.size());
+        assertEquals("p1", calls.getFirst().getString("id"));
+        assertEquals("ping", calls.getFirst().getString("name"));
+        var tools = events(events, "spring.ai.ToolCall");
+        assertEquals(1, tools.size());
+        assertEquals("success", tools.getFirst().getString("outcome"));
+        assertTrue(tools.getFirst().getDuration().toMillis() >= 15);
+    }
+
+    @Test
+    void testToolCallEventIncludesTheToolMethod() throws Exception {
+        var tool = ReactiveToolCallbacks.from(new BlockingTools())[0];
+        var file = directory.resolve("tool.jfr");
+        try (var recording = new Recording()) {
+            recording.enable("spring.ai.ToolCall").withoutThreshold();
+            recording.start();
+            tool.callNonBlocking("{\"host\": \"a\"}").block(Duration.ofSeconds(10));
+            recording.stop();
+            recording.dump(file);
+        }
+        var tools = events(RecordingFile.readAllEvents(file), "spring.ai.ToolCall");
+
+        assertEquals(1, tools.size());
+        assertTrue(tools.getFirst().getDuration().toMillis() >= 25, tools.getFirst().getDuration().toString());
+        assertNull(tools.getFirst().getStackTrace());
+    }
+
+    @Test
+    void testEventsDisabledByDefault() throws Exception {
+        var agent = new PingAgent(toolModel());
+        var file = directory.resolve("default.jfr");
+        try (var recording = new Recording()) {
+            recording.start();
+            agent.<Payload>stream(new Prompt("ping")).blockLast(Duration.ofSeconds(10));
+            recording.stop();
+            recording.dump(file);
+        }
+        var names = RecordingFile.readAllEvents(file).stream()
+            .map(e -> e.getEventType().getName())
+            .filter(name -> name.startsWith("spring.ai."))
+            .distinct().sorted().toList();
+
+        assertEquals(List.of(), names);
+    }
+}
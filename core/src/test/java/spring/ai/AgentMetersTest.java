@@ -0,0 +1,142 @@
+package spring.ai;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.annotation.Tool;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Budget;
+import spring.ai.agents.AgentConfig.ToolCallConfig;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.Agent.Event.Text;
+import spring.ai.agents.base.AgentMeters;
+import spring.ai.agents.base.AgentMetrics;
+import spring.ai.agents.base.BaseAgent;
+import spring.ai.parser.ParserMetrics;
+import spring.ai.tools.ToolMetrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgentMetersTest {
+
+    /**
+     * A model which calls the tool in its first two turns, then answers.
+     */
+    private static ScriptedChatModel toolModel(String tool) {
+        var metadata = ChatResponseMetadata.builder().model("test-model").build();
+        return new ScriptedChatModel((turn, prompt) -> {
+            var text = turn <= 2 ? "{\"name\": \"" + tool + "\", \"arguments\": {\"host\": \"a\"}}" : "Done";
+            return List.of(ScriptedChatModel.chunk(text.substring(0, 2), metadata), ScriptedChatModel.chunk(text.substring(2), metadata),
+                ScriptedChatModel.last("", ChatResponseMetadata.builder().model("test-model").usage(new DefaultUsage(80, 20)).build()));
+        }, Duration.ofMillis(10));
+    }
+
+    public static class PingAgent extends BaseAgent {
+        PingAgent(ChatModel model) {
+            super(ChatClient.create(model), new ObjectMapper());
+        }
+
+        @Tool(description = "Pings the host")
+        public Mono<String> ping(String host) {
+            return Mono.just("pong");
+        }
+
+        @Tool(description = "Fails to ping the host")
+        public Mono<String> fail(String host) {
+            return Mono.error(new IllegalStateException("unreachable"));
+        }
+    }
+
+    @Test
+    void testStreamMeters() {
+        var registry = new SimpleMeterRegistry();
+        var agent = new PingAgent(toolModel("ping"));
+        agent.setMeters(new AgentMeters(registry, "ping"));
+
+        agent.<Payload>stream(new Prompt("ping")).blockLast(Duration.ofSeconds(10));
+
+        var ttft = registry.get("agent.ttft").tags("agent", "ping", "model", "test-model").timer();
+        assertEquals(3, ttft.count());
+        // the tool turns stop at the call, before the chunk with the usage
+        assertEquals(4, registry.get("agent.inter.token").tags("model", "test-model").timer().count());
+        var tokensPerSecond = registry.get("agent.tokens.per.second").summary();
+        assertEquals(1, tokensPerSecond.count());
+        assertTrue(tokensPerSecond.max() > 0);
+        assertEquals(2, registry.get("agent.tool.calls").tags("tool", "ping", "outcome", "success").timer().count());
+        assertEquals(7, registry.get("agent.parser.cpu").tags("parser", "think").timer().count());
+        assertEquals(7, registry.get("agent.parser.cpu").tags("parser", "tool-call").timer().count());
+        var depth = registry.get("agent.tool.loop.depth").tags("agent", "ping", "model", "test-model").summary();
+        assertEquals(1, depth.count());
+        assertEquals(2, depth.max());
+    }
+
+    @Test
+    void testReasoningFieldMeteredApart() {
+        var registry = new SimpleMeterRegistry();
+        var config = new ToolCallConfig(null, null, null, null, null, null, null, null, "reasoningContent", null, null, null);
+        var agent = new BaseAgent(ChatClient.create(toolModel("ping")), new ObjectMapper(), config);
+        agent.setMeters(new AgentMeters(registry, "reasoning"));
+
+        agent.<Payload>stream(new Prompt("ping")).blockLast(Duration.ofSeconds(10));
+
+        // the chunks are mapped from the metadata, no tags are scanned
+        assertTrue(registry.get("agent.parser.cpu").tags("agent", "reasoning", "parser", "reasoning").timer().count() > 0);
+        assertNull(registry.find("agent.parser.cpu").tags("agent", "reasoning", "parser", "think").timer());
+    }
+
+    @Test
+    void testProcessMetricsBound() {
+        var registry = new SimpleMeterRegistry();
+        var agent = new PingAgent(toolModel("ping"));
+        agent.setMeters(new AgentMeters(registry, "ping"));
+        new AgentMeters(registry, "other");
+
+        agent.<Payload>stream(new Prompt("ping")).blockLast(Duration.ofSeconds(10));
+
+        assertEquals(AgentMetrics.toolCalls(), registry.get("agent.tool.runs").functionCounter().count());
+        assertEquals(AgentMetrics.tokens(), registry.get("agent.tokens").functionCounter().count());
+        assertEquals(AgentMetrics.exhaustedBudgets(Budget.Limit.TOKENS),
+            registry.get("agent.budgets.exhausted").tags("limit", "tokens").functionCounter().count());
+        assertEquals(ToolMetrics.cacheHits(), registry.get("tool.result.cache").tags("result", "hit").functionCounter().count());
+        assertEquals(ParserMetrics.parsedBytes(), registry.get("parser.bytes").functionCounter().count());
+        assertEquals(3, registry.get("parser.candidates.aborted").functionCounters().size());
+    }
+
+    @Test
+    void testToolErrors() {
+        var registry = new SimpleMeterRegistry();
+        var agent = new PingAgent(toolModel("fail"));
+        agent.setMeters(new AgentMeters(registry, "ping"));
+
+        assertThrows(IllegalStateException.class, () -> agent.<Payload>stream(new Prompt("ping")).blockLast(Duration.ofSeconds(10)));
+
+        assertEquals(1, registry.get("agent.tool.calls").tags("tool", "fail", "outcome", "error").timer().count());
+        assertEquals(1, registry.get("agent.tool.errors").tags("tool", "fail", "exception", "IllegalStateException").counter().count());
+    }
+
+    @Test
+    void testStructuredOutputParser() {
+        var registry = new SimpleMeterRegistry();
+        var agent = new BaseAgent(ChatClient.create(toolModel("none")), new ObjectMapper());
+        agent.setMeters(new AgentMeters(registry, "json"));
+
+        var values = agent.parseJSON(Flux.just(new Text("{\"a\": ", false), new Text("1}", true)), new TypeReference<Map<String, Integer>>() {})
+            .collectList().block();
+
+        assertEquals(1, values.size());
+        assertEquals(2, registry.get("agent.parser.cpu").tags("agent", "json", "parser", "json").timer().count());
+    }
+}
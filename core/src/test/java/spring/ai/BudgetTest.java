@@ -0,0 +1,154 @@
+package spring.ai;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.annotation.Tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Budget;
+import spring.ai.agents.Agent.Event.Exhausted;
+import spring.ai.agents.Agent.Event.FuncResult;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.AgentConfig.ToolCallConfig;
+import spring.ai.agents.base.AgentMetrics;
+import spring.ai.agents.base.BaseAgent;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BudgetTest {
+
+    /**
+     * A model which calls the tool again after every result.
+     */
+    private static ScriptedChatModel loopingModel(Duration delay) {
+        return new ScriptedChatModel((turn, prompt) -> List.of(
+            ScriptedChatModel.chunk("{\"name\": \"ping\", \"arguments\": {\"host\": \"a\"}}"),
+            ScriptedChatModel.last("", ChatResponseMetadata.builder().usage(new DefaultUsage(80, 20)).build())), delay);
+    }
+
+    /**
+     * A model which calls the tool {@code calls} times in each of its first {@code toolTurns} turns, then answers.
+     */
+    private static ScriptedChatModel answeringModel(int toolTurns, int calls) {
+        var call = "{\"name\": \"ping\", \"arguments\": {\"host\": \"a\"}}";
+        return new ScriptedChatModel((turn, prompt) -> List.of(
+            ScriptedChatModel.chunk(turn <= toolTurns ? "[" + String.join(", ", Collections.nCopies(calls, call)) + "]" : "Done"),
+            ScriptedChatModel.last("")));
+    }
+
+    public static class PingAgent extends BaseAgent {
+        PingAgent(ChatModel model, Budget budget) {
+            this(model, budget, null);
+        }
+
+        PingAgent(ChatModel model, Budget budget, Integer maxParallelToolCalls) {
+            super(ChatClient.create(model), new ObjectMapper(), new ToolCallConfig(null, null, null, null, null, null, null, null, null, maxParallelToolCalls, null, budget));
+        }
+
+        @Tool(description = "Pings the host")
+        public Mono<String> ping(String host) {
+            return Mono.just("pong");
+        }
+    }
+
+    private static List<Payload> run(ScriptedChatModel model, Budget budget) {
+        return new PingAgent(model, budget).<Payload>stream(new Prompt("ping")).collectList().block(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void testToolCallsLimit() {
+        var model = loopingModel(Duration.ZERO);
+        var exhausted = AgentMetrics.exhaustedBudgets(Budget.Limit.TOOL_CALLS);
+        var payloads = run(model, new Budget(3, null, null));
+
+        var results = payloads.stream().filter(p -> p instanceof FuncResult).map(p -> ((FuncResult) p).result()).toList();
+        // the turn after the last call runs without tools, its call gets an error
+        assertEquals(List.of("\"pong\"", "\"pong\"", "\"pong\""), results.subList(0, 3));
+        assertTrue(results.get(3).startsWith("Error:"), results.get(3));
+        assertEquals(new Exhausted(Budget.Limit.TOOL_CALLS, 3, 3), payloads.getLast());
+        assertEquals(4, model.calls());
+        assertEquals(exhausted + 1, AgentMetrics.exhaustedBudgets(Budget.Limit.TOOL_CALLS));
+    }
+
+    @Test
+    void testToolCallsOfTurnCapped() {
+        var model = answeringModel(2, 2);
+        var payloads = new PingAgent(model, new Budget(3, null, null), 4).<Payload>stream(new Prompt("ping"))
+            .collectList().block(Duration.ofSeconds(10));
+
+        var results = payloads.stream().filter(p -> p instanceof FuncResult).map(p -> ((FuncResult) p).result()).toList();
+        // the second turn runs one of its two calls, then the model answers
+        assertEquals(4, results.size());
+        assertEquals(3, results.stream().filter(r -> r.equals("\"pong\"")).count());
+        assertTrue(results.get(3).startsWith("Error:"), results.get(3));
+        assertFalse(payloads.stream().anyMatch(p -> p instanceof Exhausted));
+        assertEquals(3, model.calls());
+    }
+
+    @Test
+    void testAnswerAtToolCallsLimit() {
+        var model = answeringModel(2, 1);
+        var payloads = run(model, new Budget(2, null, null));
+
+        // the limit is reached, not exceeded, the model still answers
+        assertEquals(2, payloads.stream().filter(p -> p instanceof FuncResult).count());
+        assertFalse(payloads.stream().anyMatch(p -> p instanceof Exhausted));
+        assertEquals(3, model.calls());
+    }
+
+    @Test
+    void testTokensLimit() {
+        var model = loopingModel(Duration.ZERO);
+        var payloads = run(model, new Budget(null, 250L, null));
+
+        // 100 tokens per turn, the third turn goes over the limit
+        assertEquals(new Exhausted(Budget.Limit.TOKENS, 300, 250), payloads.getLast());
+        assertEquals(3, model.calls());
+    }
+
+    @Test
+    void testUsageOfTurnNotSummedOverChunks() {
+        // the usage of the turn so far comes with every chunk
+        var model = new ScriptedChatModel((turn, prompt) -> List.of(
+            ScriptedChatModel.chunk("{\"name\": \"ping\", ", ChatResponseMetadata.builder().usage(new DefaultUsage(80, 5)).build()),
+            ScriptedChatModel.chunk("\"arguments\": {\"host\": \"a\"}}", ChatResponseMetadata.builder().usage(new DefaultUsage(80, 15)).build()),
+            ScriptedChatModel.last("", ChatResponseMetadata.builder().usage(new DefaultUsage(80, 20)).build())));
+        var payloads = run(model, new Budget(null, 250L, null));
+
+        // 100 tokens per turn as with the usage in the last chunk only
+        assertEquals(new Exhausted(Budget.Limit.TOKENS, 300, 250), payloads.getLast());
+        assertEquals(3, model.calls());
+    }
+
+    @Test
+    void testTokensLimitOfStream() {
+        var model = loopingModel(Duration.ZERO);
+        var payloads = new PingAgent(model, null).<Payload>stream(new Prompt("ping"), new Budget(null, 250L, null))
+            .collectList().block(Duration.ofSeconds(10));
+
+        // the turns run to their end for the usage, as with the configured budget
+        assertEquals(new Exhausted(Budget.Limit.TOKENS, 300, 250), payloads.getLast());
+        assertEquals(3, model.calls());
+    }
+
+    @Test
+    void testTimeout() {
+        var model = loopingModel(Duration.ofMillis(50));
+        var payloads = run(model, new Budget(null, null, Duration.ofMillis(300)));
+
+        var last = (Exhausted) payloads.getLast();
+        assertEquals(Budget.Limit.TIME, last.limit());
+        assertTrue(last.used() >= 300);
+        assertTrue(model.calls() < 10);
+    }
+}
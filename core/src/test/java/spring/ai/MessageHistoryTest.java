@@ -0,0 +1,58 @@
+package spring.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import spring.ai.agents.base.MessageHistory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageHistoryTest {
+
+    @Test
+    void testAppendSharesPrefix() {
+        var expected = new ArrayList<Message>();
+        var history = MessageHistory.of(List.of(new UserMessage("task")));
+        expected.add(history.get(0));
+        for (int turn = 0; turn < 100; turn++) {
+            var call = new AssistantMessage("call " + turn);
+            var result = new UserMessage("result " + turn);
+            var next = history.append(List.of(call, result));
+            // the previous history is not changed
+            assertEquals(expected, history);
+            expected.add(call);
+            expected.add(result);
+            history = next;
+        }
+        assertEquals(expected, history);
+        assertEquals(expected, new ArrayList<>(history));
+        assertEquals(expected.hashCode(), history.hashCode());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), history.get(i));
+        }
+        assertSame(history, MessageHistory.of(history));
+        assertThrows(UnsupportedOperationException.class, () -> MessageHistory.of(expected).add(new UserMessage("x")));
+    }
+
+    @Test
+    void testForks() {
+        var base = MessageHistory.of(List.of(new UserMessage("a"), new AssistantMessage("b"))).append(new UserMessage("c"));
+        var left = base.append(new AssistantMessage("left"));
+        var right = base.append(new AssistantMessage("right"));
+        assertEquals("left", left.getLast().getText());
+        assertEquals("right", right.getLast().getText());
+        assertEquals(3, base.size());
+
+        // a fork from the middle of a segment
+        var early = right.prefix(1).append(new AssistantMessage("early"));
+        assertEquals(List.of("a", "early"), early.stream().map(Message::getText).toList());
+        assertSame(base, right.prefix(3));
+        assertTrue(right.prefix(0).isEmpty());
+        assertEquals(List.of("a", "b", "c", "right"), right.stream().map(Message::getText).toList());
+    }
+}
@@ -0,0 +1,154 @@
+package spring.ai;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tool.annotation.Tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Agent.Event.FuncCall;
+import spring.ai.agents.Agent.Event.FuncResult;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.Agent.Event.Text;
+import spring.ai.agents.AgentConfig.ToolCallConfig;
+import spring.ai.agents.AgentConfig.ToolCallHandler;
+import spring.ai.agents.base.BaseToolCallParser;
+import spring.ai.agents.base.BaseToolCallbackHandler;
+import spring.ai.agents.base.PayloadAggregator;
+import spring.ai.parser.StreamingJsonParser.Limits;
+import spring.ai.schema.SchemaFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelToolCallsTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public static class Tools {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Tool(description = "Echoes the text after a delay")
+        public Mono<String> echo(String text) {
+            return Mono.delay(Duration.ofMillis(100))
+                .doOnSubscribe(s -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                .doFinally(s -> running.decrementAndGet())
+                .map(i -> text);
+        }
+    }
+
+    private static ToolCallConfig config(int maxParallelToolCalls) {
+        return new ToolCallConfig(null, SchemaFormat.JSON, null, null, null, null, null, null, null, maxParallelToolCalls, null, null);
+    }
+
+    private static Flux<Payload> chunks(String input, int chunkSize) {
+        return Flux.range(0, (input.length() + chunkSize - 1) / chunkSize).map(i -> {
+            int end = Math.min(input.length(), (i + 1) * chunkSize);
+            return new Text(input.substring(i * chunkSize, end), end == input.length());
+        });
+    }
+
+    private static final String TURN = "First {\"name\": \"echo\", \"arguments\": {\"text\": \"a\"}} then "
+        + "[{\"name\": \"echo\", \"arguments\": {\"text\": \"b\"}}, {\"name\": \"echo\", \"arguments\": {\"text\": \"c\"}}] done";
+
+    @Test
+    void testCallsOfTurnRunConcurrently() {
+        var tools = new Tools();
+        var handler = new BaseToolCallbackHandler(tools, new BaseToolCallParser(mapper, Limits.DEFAULT, false, true), mapper, config(4));
+        List<Payload> payloads = handler.handle(chunks(TURN, 7)).collectList().block();
+
+        var calls = payloads.stream().filter(p -> p instanceof FuncCall).toList();
+        var results = payloads.stream().filter(p -> p instanceof FuncResult).map(p -> ((FuncResult) p).result()).toList();
+        assertEquals(3, calls.size());
+        // results keep the order of the calls
+        assertEquals(List.of("\"a\"", "\"b\"", "\"c\""), results);
+        assertEquals(3, tools.maxRunning.get());
+        var text = new StringBuilder();
+        payloads.stream().filter(p -> p instanceof Text t && t.text() != null).forEach(p -> text.append(((Text) p).text()));
+        // the text after the calls is not cut off
+        assertEquals(TURN, text.toString());
+    }
+
+    @Test
+    void testBadCallDoesNotDropOthers() {
+        var handler = new BaseToolCallbackHandler(new Tools(), new BaseToolCallParser(mapper, Limits.DEFAULT, false, true), mapper, config(4));
+        var turn = "[{\"id\": \"x\", \"name\": \"echo\", \"arguments\": {\"text\": \"a\"}},"
+            + " {\"name\": \"echo\", \"arguments\": \"b\"},"
+            + " {\"id\": \"x\", \"name\": \"echo\", \"arguments\": {\"text\": \"c\"}}]";
+        List<Payload> payloads = handler.handle(chunks(turn, 9)).collectList().block();
+
+        var calls = payloads.stream().filter(p -> p instanceof FuncCall).map(p -> (FuncCall) p).toList();
+        var results = payloads.stream().filter(p -> p instanceof FuncResult).map(p -> ((FuncResult) p).result()).toList();
+        // the call with arguments which are not an object is skipped, not the whole array
+        assertEquals(List.of("\"a\"", "\"c\""), results);
+        // outside a plan the ids of the model are not used, repeated ones would mix up the results
+        assertEquals(2, calls.stream().map(FuncCall::id).filter(id -> !"x".equals(id)).distinct().count());
+    }
+
+    @Test
+    void testSingleCallStopsTurn() {
+        var tools = new Tools();
+        var handler = new BaseToolCallbackHandler(tools, new BaseToolCallParser(mapper), mapper, config(1));
+        List<Payload> payloads = handler.handle(chunks(TURN, 7)).collectList().block();
+
+        var results = payloads.stream().filter(p -> p instanceof FuncResult).map(p -> ((FuncResult) p).result()).toList();
+        assertEquals(List.of("\"a\""), results);
+        assertTrue(payloads.get(payloads.size() - 1) instanceof FuncResult);
+    }
+
+    @Test
+    void testResultsInSinglePrompt() {
+        var a = new FuncResult(new FuncCall("1", "echo", Map.of("text", "a")), "a");
+        var b = new FuncResult(new FuncCall("2", "echo", Map.of("text", "b")), "b");
+        var messages = config(2).toolResponse(List.of(a, b), mapper);
+        assertEquals(2, messages.size());
+        assertEquals(MessageType.ASSISTANT, messages.get(0).getMessageType());
+        assertTrue(messages.get(0).getText().contains("\"id\":\"1\"") && messages.get(0).getText().contains("\"id\":\"2\""));
+        assertEquals("a\n---\nb", ((UserMessage) messages.get(1)).getText());
+
+        var engine = new ToolCallConfig(ToolCallHandler.ENGINE, null, null, null, null, null, null, null, null, 2, null, null);
+        var engineMessages = engine.toolResponse(List.of(a, b), mapper);
+        assertEquals(2, ((AssistantMessage) engineMessages.get(0)).getToolCalls().size());
+        assertEquals(MessageType.TOOL, engineMessages.get(1).getMessageType());
+    }
+
+    @Test
+    void testHistoryGroupsResultsOfTurn() {
+        var handler = new BaseToolCallbackHandler(new Tools(), new BaseToolCallParser(mapper), mapper, config(2));
+        var a = new FuncResult(new FuncCall("1", "echo", Map.of("text", "a")), "a");
+        var b = new FuncResult(new FuncCall("2", "echo", Map.of("text", "b")), "b");
+        var messages = PayloadAggregator.toMessages(List.of(new Text("Echoing", true), a, b, new Text("Done", true)), handler, false);
+
+        // the calls of the turn, then their results, not a call and a result after another
+        assertEquals(List.of(MessageType.ASSISTANT, MessageType.USER, MessageType.ASSISTANT),
+            messages.stream().map(m -> m.getMessageType()).toList());
+        assertEquals("a\n---\nb", messages.get(1).getText());
+        assertEquals("Done\n", messages.get(2).getText());
+    }
+
+    @Test
+    void testHistorySeparatesBackToBackTurns() {
+        var handler = new BaseToolCallbackHandler(new Tools(), new BaseToolCallParser(mapper), mapper, config(2));
+        var a = new FuncResult(new FuncCall("1", "echo", Map.of("text", "a")), "a");
+        var b = new FuncResult(new FuncCall("2", "echo", Map.of("text", "b")), "b");
+        var c = new FuncResult(new FuncCall("3", "echo", Map.of("text", "c")), "c");
+        // a turn with two calls, then a turn with one, no text between them
+        var messages = PayloadAggregator.toMessages(List.of(a.call(), b.call(), a, b, c.call(), c, new Text("Done", true)), handler, false);
+
+        assertEquals(List.of(MessageType.ASSISTANT, MessageType.USER, MessageType.ASSISTANT, MessageType.USER, MessageType.ASSISTANT),
+            messages.stream().map(m -> m.getMessageType()).toList());
+        assertEquals("a\n---\nb", messages.get(1).getText());
+        assertTrue(messages.get(2).getText().contains("\"id\":\"3\"") && !messages.get(2).getText().contains("\"id\":\"1\""));
+        assertEquals("c", messages.get(3).getText());
+        assertEquals("Done\n", messages.get(4).getText());
+    }
+}
@@ -0,0 +1,57 @@
+package spring.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import spring.ai.agents.Agent.Event;
+import spring.ai.agents.AgentConfig.ToolCallConfig;
+import spring.ai.agents.base.BaseAgent;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReasoningContentTest {
+
+    private static ChatResponse chunk(String reasoning, String text, boolean last) {
+        var metadata = reasoning != null ? Map.<String, Object>of("reasoningContent", reasoning) : Map.<String, Object>of();
+        var generationMetadata = last ? ChatGenerationMetadata.builder().finishReason("stop").build() : ChatGenerationMetadata.NULL;
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text, metadata), generationMetadata)));
+    }
+
+    @Test
+    void testReasoningFieldBypassesTags() {
+        var config = new ToolCallConfig(null, null, null, null, null, null, null, null, "reasoningContent", null, null, null);
+        var agent = new BaseAgent(null, new ObjectMapper(), config);
+        var thinking = new AtomicBoolean();
+        List<Event.Payload> payloads = new ArrayList<>();
+        for (var response : List.of(chunk("Let me ", "", false), chunk("think", null, false),
+                chunk(null, "<think>not ", false), chunk(null, "reasoning</think>", false), chunk(null, "", true))) {
+            payloads.addAll(agent.<Event.Payload>toPayloads(response, thinking));
+        }
+
+        var thinkingText = new StringBuilder();
+        var text = new StringBuilder();
+        for (var payload : payloads) {
+            if (payload instanceof Event.Thinking t && t.text() != null) {
+                thinkingText.append(t.text());
+            } else if (payload instanceof Event.Text t && t.text() != null) {
+                text.append(t.text());
+            }
+        }
+        assertEquals("Let me think", thinkingText.toString());
+        assertEquals("<think>not reasoning</think>", text.toString());
+        // the thinking ends when the answer starts
+        var closed = payloads.stream().filter(p -> p instanceof Event.Thinking && p.isLast()).count();
+        assertEquals(1, closed);
+        assertTrue(payloads.get(payloads.size() - 1) instanceof Event.Text last && last.isLast());
+    }
+}
@@ -0,0 +1,220 @@
+package spring.ai;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.DefaultChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Agent.Event.FuncCall;
+import spring.ai.agents.Agent.Event.FuncResult;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.Agent.Event.Text;
+import spring.ai.agents.base.AgentMetrics;
+import spring.ai.agents.base.BaseAgent;
+import spring.ai.agents.base.ResponseCache;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * A model which streams the same answer in three chunks.
+     */
+    private static ScriptedChatModel countingModel(Duration delay) {
+        return new ScriptedChatModel((turn, prompt) -> List.of(
+            ScriptedChatModel.chunk("Hello"),
+            ScriptedChatModel.chunk(" world"),
+            ScriptedChatModel.last("!", ChatResponseMetadata.builder().usage(new DefaultUsage(10, 3)).build())), delay);
+    }
+
+    private static BaseAgent agent(ScriptedChatModel model, ResponseCache cache) {
+        var agent = new BaseAgent(ChatClient.create(model), new ObjectMapper());
+        agent.setResponseCache(cache);
+        return agent;
+    }
+
+    private static List<Payload> run(BaseAgent agent, Prompt prompt) {
+        return agent.<Payload>stream(prompt).collectList().block(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void testReplaysWithChunkBoundaries() {
+        var model = countingModel(Duration.ZERO);
+        var cache = new ResponseCache(directory, 1 << 20, false);
+        var hits = AgentMetrics.responseCacheHits();
+
+        var recorded = run(agent(model, cache), new Prompt("hi"));
+        var replayed = run(agent(model, cache), new Prompt("hi"));
+
+        assertEquals(1, model.calls());
+        assertEquals(hits + 1, AgentMetrics.responseCacheHits());
+        assertEquals(recorded, replayed);
+        assertEquals(List.of(new Text("Hello", false), new Text(" world", false), new Text("!", true)), replayed);
+    }
+
+    @Test
+    void testCancelledResponseRecordedToItsEnd() {
+        var model = countingModel(Duration.ofMillis(20));
+        var cache = new ResponseCache(directory, 1 << 20, false);
+        var prompt = new Prompt("hi");
+        var tools = new ToolCallback[0];
+
+        var cut = cache.stream(prompt, tools, () -> model.stream(prompt)).take(2).collectList().block();
+        assertEquals(2, cut.size());
+        await().atMost(Duration.ofSeconds(5)).until(() -> cache.size() == 1);
+
+        // the next consumer gets the whole response, not the cut one
+        assertEquals(3, cache.stream(prompt, tools, () -> model.stream(prompt)).collectList().block().size());
+        assertEquals(1, model.calls());
+    }
+
+    public static class PingAgent extends BaseAgent {
+        PingAgent(ScriptedChatModel model, ResponseCache cache) {
+            super(ChatClient.create(model), new ObjectMapper());
+            setResponseCache(cache);
+        }
+
+        @Tool(description = "Pings the host")
+        public Mono<String> ping(String host) {
+            return Mono.just("pong");
+        }
+    }
+
+    @Test
+    void testReplaysToolTurns() {
+        // the tool turn is cancelled at the call, the text after it is still recorded
+        var model = new ScriptedChatModel((turn, prompt) -> turn == 1
+            ? List.of(ScriptedChatModel.chunk("{\"name\": \"ping\", \"arguments\": {\"host\": \"a\"}}"),
+                ScriptedChatModel.chunk(" then"), ScriptedChatModel.last(" more"))
+            : List.of(ScriptedChatModel.last("Done")));
+        var cache = new ResponseCache(directory, 1 << 20, false);
+
+        var recorded = new PingAgent(model, cache).<Payload>stream(new Prompt("ping")).collectList().block(Duration.ofSeconds(10));
+        await().atMost(Duration.ofSeconds(5)).until(() -> cache.size() == 2);
+        var replayed = new PingAgent(model, cache).<Payload>stream(new Prompt("ping")).collectList().block(Duration.ofSeconds(10));
+
+        assertEquals(2, model.calls());
+        assertTrue(replayed.stream().anyMatch(p -> p instanceof FuncResult result && result.result().contains("pong")));
+        assertEquals(withoutIds(recorded), withoutIds(replayed));
+    }
+
+    private static List<Object> withoutIds(List<Payload> payloads) {
+        return payloads.stream().map(p -> p instanceof FuncResult result ? result.result()
+            : p instanceof FuncCall call ? call.name() : (Object) p).toList();
+    }
+
+    @Test
+    void testFingerprintOfMessagesAndOptions() {
+        var model = countingModel(Duration.ZERO);
+        var cache = new ResponseCache(directory, 1 << 20, false);
+        var agent = agent(model, cache);
+
+        run(agent, new Prompt("hi"));
+        run(agent, new Prompt("hello"));
+        run(agent, new Prompt("hi", ChatOptions.builder().temperature(0.5).build()));
+        run(agent, new Prompt("hi", ChatOptions.builder().temperature(0.5).build()));
+
+        assertEquals(3, model.calls());
+        assertEquals(3, cache.size());
+
+        // every property of the options of a model
+        var tools = new ToolCallback[0];
+        var seed1 = new Prompt("hi", OpenAiChatOptions.builder().model("m").seed(1).build());
+        var seed2 = new Prompt("hi", OpenAiChatOptions.builder().model("m").seed(2).build());
+        assertNotEquals(cache.fingerprint(seed1, tools), cache.fingerprint(seed2, tools));
+        assertEquals(cache.fingerprint(seed1, tools), cache.fingerprint(seed1.copy(), tools));
+        assertNotEquals(cache.fingerprint(new Prompt("hi", ChatOptions.builder().model("m").build()), tools),
+            cache.fingerprint(new Prompt("hi", OpenAiChatOptions.builder().model("m").build()), tools));
+    }
+
+    public static class OpaqueOptions extends DefaultChatOptions {
+        public Object getClient() {
+            return new Object();
+        }
+    }
+
+    @Test
+    void testOptionsWithoutFingerprintNotRecorded() {
+        var model = countingModel(Duration.ZERO);
+        var cache = new ResponseCache(directory, 1 << 20, false);
+        var prompt = new Prompt("hi", new OpaqueOptions());
+
+        assertNull(cache.fingerprint(prompt, new ToolCallback[0]));
+        cache.stream(prompt, new ToolCallback[0], () -> model.stream(prompt)).blockLast();
+        cache.stream(prompt, new ToolCallback[0], () -> model.stream(prompt)).blockLast();
+        assertEquals(2, model.calls());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testReplayTiming() {
+        var model = countingModel(Duration.ofMillis(100));
+        run(agent(model, new ResponseCache(directory, 1 << 20, false)), new Prompt("hi"));
+
+        var start = System.nanoTime();
+        run(agent(model, new ResponseCache(directory, 1 << 20, false)), new Prompt("hi"));
+        var fast = Duration.ofNanos(System.nanoTime() - start);
+        start = System.nanoTime();
+        run(agent(model, new ResponseCache(directory, 1 << 20, true)), new Prompt("hi"));
+        var timed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertEquals(1, model.calls());
+        assertTrue(fast.toMillis() < 250, fast.toString());
+        assertTrue(timed.toMillis() >= 280, timed.toString());
+    }
+
+    @Test
+    void testInvalidateAndEviction() throws Exception {
+        var model = countingModel(Duration.ZERO);
+        var cache = new ResponseCache(directory, 1 << 20, false);
+        var agent = agent(model, cache);
+        var tools = agent.getToolCallbackHandler().getToolCallbacks();
+
+        run(agent, new Prompt("a"));
+        run(agent, new Prompt("b"));
+        // the recordings are read again by a new cache on the same directory
+        var reopened = new ResponseCache(directory, 1 << 20, false);
+        assertEquals(2, reopened.size());
+        assertEquals(cache.sizeInBytes(), reopened.sizeInBytes());
+
+        assertTrue(cache.invalidate(agent.getToolCallbackHandler().addToolsToPrompt(new Prompt("a")), tools));
+        assertFalse(Files.exists(directory.resolve(cache.fingerprint(agent.getToolCallbackHandler().addToolsToPrompt(new Prompt("a")), tools) + ".json")));
+        run(agent, new Prompt("a"));
+        assertEquals(3, model.calls());
+
+        // room for a single recording, the least recently used one is deleted
+        var entry = cache.sizeInBytes() / cache.size();
+        var bounded = new ResponseCache(directory.resolve("bounded"), entry + entry / 2, false);
+        var boundedAgent = agent(model, bounded);
+        run(boundedAgent, new Prompt("a"));
+        run(boundedAgent, new Prompt("b"));
+        assertEquals(1, bounded.size());
+        run(boundedAgent, new Prompt("b"));
+        assertEquals(4 + 1, model.calls());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(directory.resolve("bounded")), files.toList());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package spring.ai;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * A streaming model which answers the n-th prompt, from 1, with the chunks of its script.
+ */
+public class ScriptedChatModel implements ChatModel {
+
+    private final BiFunction<Integer, Prompt, List<ChatResponse>> script;
+    private final Duration delay;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger cancels = new AtomicInteger();
+
+    public ScriptedChatModel(BiFunction<Integer, Prompt, List<ChatResponse>> script) {
+        this(script, Duration.ZERO);
+    }
+
+    public ScriptedChatModel(BiFunction<Integer, Prompt, List<ChatResponse>> script, Duration delay) {
+        this.script = script;
+        this.delay = delay;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        var chunks = Flux.fromIterable(script.apply(calls.incrementAndGet(), prompt));
+        return (delay.isZero() ? chunks : chunks.delayElements(delay)).doOnCancel(cancels::incrementAndGet);
+    }
+
+    /**
+     * Returns the number of streamed prompts.
+     */
+    public int calls() {
+        return calls.get();
+    }
+
+    /**
+     * Returns the number of responses which were cancelled before their end.
+     */
+    public int cancels() {
+        return cancels.get();
+    }
+
+    public static ChatResponse chunk(String text) {
+        return chunk(text, ChatResponseMetadata.builder().build());
+    }
+
+    public static ChatResponse chunk(String text, ChatResponseMetadata metadata) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))), metadata);
+    }
+
+    /**
+     * Returns the last chunk of a response, with its finish reason.
+     */
+    public static ChatResponse last(String text) {
+        return last(text, ChatResponseMetadata.builder().build());
+    }
+
+    public static ChatResponse last(String text, ChatResponseMetadata metadata) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text), ChatGenerationMetadata.builder().finishReason("stop").build())),
+            metadata);
+    }
+}
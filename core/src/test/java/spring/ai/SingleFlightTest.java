@@ -0,0 +1,105 @@
+package spring.ai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.Agent.Event.Text;
+import spring.ai.agents.base.AgentMetrics;
+import spring.ai.agents.base.BaseAgent;
+import spring.ai.agents.base.SingleFlight;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    /**
+     * A model which streams the prompt text back word by word.
+     */
+    private static ScriptedChatModel echoModel() {
+        return new ScriptedChatModel((turn, prompt) -> {
+            var words = prompt.getInstructions().getLast().getText().split(" ");
+            var chunks = new ArrayList<ChatResponse>();
+            for (int i = 0; i < words.length - 1; i++) {
+                chunks.add(ScriptedChatModel.chunk(words[i] + " "));
+            }
+            chunks.add(ScriptedChatModel.last(words[words.length - 1]));
+            return chunks;
+        }, Duration.ofMillis(50));
+    }
+
+    private static BaseAgent agent(ScriptedChatModel model, SingleFlight singleFlight) {
+        var agent = new BaseAgent(ChatClient.create(model), new ObjectMapper());
+        agent.setSingleFlight(singleFlight);
+        return agent;
+    }
+
+    private static String text(List<Payload> payloads) {
+        var text = new StringBuilder();
+        payloads.forEach(p -> text.append(((Text) p).text()));
+        return text.toString();
+    }
+
+    @Test
+    void testConcurrentPromptsShareResponse() {
+        var model = echoModel();
+        var singleFlight = new SingleFlight(16);
+        var agent = agent(model, singleFlight);
+        var coalesced = AgentMetrics.coalescedPrompts();
+
+        // the second prompt joins after the first chunks, and gets them from the buffer
+        var first = agent.<Payload>stream(new Prompt("one two three four")).collectList();
+        var second = Mono.delay(Duration.ofMillis(120)).then(agent.<Payload>stream(new Prompt("one two three four")).collectList());
+        var other = agent.<Payload>stream(new Prompt("five six")).collectList();
+        var results = Mono.zip(first, second, other).block(Duration.ofSeconds(10));
+
+        assertEquals(2, model.calls());
+        assertEquals(coalesced + 1, AgentMetrics.coalescedPrompts());
+        assertEquals("one two three four", text(results.getT1()));
+        // with the same chunks
+        assertEquals(results.getT1(), results.getT2());
+        assertEquals("five six", text(results.getT3()));
+        assertEquals(0, singleFlight.size());
+
+        // a prompt after the flight gets its own response
+        agent.<Payload>stream(new Prompt("one two three four")).blockLast(Duration.ofSeconds(10));
+        assertEquals(3, model.calls());
+    }
+
+    @Test
+    void testLateJoinerPastBufferGetsOwnResponse() {
+        var model = echoModel();
+        var agent = agent(model, new SingleFlight(2));
+
+        var first = agent.<Payload>stream(new Prompt("a b c d e f")).collectList();
+        var late = Mono.delay(Duration.ofMillis(180)).then(agent.<Payload>stream(new Prompt("a b c d e f")).collectList());
+        var results = Flux.merge(first, late).collectList().block(Duration.ofSeconds(10));
+
+        assertEquals(2, model.calls());
+        results.forEach(r -> assertEquals("a b c d e f", text(r)));
+    }
+
+    @Test
+    void testResponseCancelledWhenAllStreamsCancel() {
+        var model = echoModel();
+        var agent = agent(model, new SingleFlight(16));
+
+        var first = agent.<Payload>stream(new Prompt("a b c d e f")).take(1).collectList();
+        var second = agent.<Payload>stream(new Prompt("a b c d e f")).take(3).collectList();
+        var results = Flux.merge(first, second).collectList().block(Duration.ofSeconds(10));
+
+        assertEquals(1, model.calls());
+        assertEquals(List.of(1, 3), results.stream().map(List::size).sorted().toList());
+        assertEquals(1, model.cancels());
+    }
+}
@@ -4,18 +4,30 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import spring.ai.parser.ParserMetrics;
 import spring.ai.parser.StreamingJsonParser;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class StreamingJsonParserTest {
 
+	private static final Logger logger = LoggerFactory.getLogger(StreamingJsonParserTest.class);
+
 	private JsonFactory jsonFactory;
 	private ObjectMapper objectMapper;
 
@@ -313,6 +325,366 @@ public class StreamingJsonParserTest {
 		assertEquals(json, output.toString());
 	}
 
+	@Test
+	void testNonAsciiJson() {
+		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		List<JsonNode> results = new ArrayList<>();
+		parser.consume(results::add);
+
+		String input = "Ответ: {\"name\":\"Имя\",\"emoji\":\"\uD83D\uDE00\"} готово";
+		String output = parser.feedText(input, true);
+
+		assertEquals(1, results.size());
+		assertEquals("Имя", results.get(0).get("name").asText());
+		assertEquals("\uD83D\uDE00", results.get(0).get("emoji").asText());
+		assertEquals(input, output);
+	}
+
+	@Test
+	void testChunkSizeDoesNotChangeResults() {
+		String input = "Call ```json\n{\"name\":\"ls\",\"arguments\":{\"path\":\"/tmp\"}}\n``` then {bad} and [1,2] or ``` {\"é\":[true,null]}";
+		List<String> expectedNodes = null;
+		for (int chunkSize : new int[] { input.length(), 7, 3, 1 }) {
+			StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+			List<String> results = new ArrayList<>();
+			parser.consume(node -> results.add(node.toString()));
+			StringBuilder output = new StringBuilder();
+			for (int i = 0; i < input.length(); i += chunkSize) {
+				int end = Math.min(input.length(), i + chunkSize);
+				output.append(parser.feedText(input.substring(i, end), end == input.length()));
+			}
+			assertEquals(input, output.toString());
+			if (expectedNodes == null) {
+				expectedNodes = results;
+				assertEquals(3, results.size());
+			}
+			assertEquals(expectedNodes, results);
+		}
+	}
+
+	@Test
+	void testMissingValueNotAccepted() {
+		// the async parser accepts a '}' after a separator which ended its previous input
+		String input = "Empty {\"a\":} and {\"b\":1,} but {\"c\":[0x]} then {\"ok\":\"x\"}";
+		for (int chunkSize : new int[] { input.length(), 7, 1 }) {
+			StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+			List<String> results = new ArrayList<>();
+			parser.consume(node -> results.add(node.toString()));
+			StringBuilder output = new StringBuilder();
+			for (int i = 0; i < input.length(); i += chunkSize) {
+				int end = Math.min(input.length(), i + chunkSize);
+				output.append(parser.feedText(input.substring(i, end), end == input.length()));
+			}
+			assertEquals(input, output.toString());
+			assertEquals(List.of("{\"ok\":\"x\"}"), results, "chunks of " + chunkSize);
+		}
+	}
+
+	@Test
+	void testNoFenceOutputWithoutRequiredOutput() {
+		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, false);
+		List<JsonNode> results = new ArrayList<>();
+		parser.consume(results::add);
+
+		// neither the fence of a block nor a fence which is not followed by JSON is returned
+		assertEquals("", parser.feedText("```json\n{\"a\":1}\n``` and ``` b ```x c", true));
+		assertEquals(1, results.size());
+	}
+
+	@Test
+	void testAppendableOutput() {
+		String input = "Call ```json\n{\"name\":\"ls\"}\n``` then {bad} and ``` [1,2] é";
+		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		StreamingJsonParser bufferParser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		List<JsonNode> results = new ArrayList<>();
+		parser.consume(results::add);
+		StringBuilder output = new StringBuilder();
+		CharBuffer buffer = CharBuffer.allocate(input.length());
+		for (int i = 0; i < input.length(); i += 5) {
+			int end = Math.min(input.length(), i + 5);
+			String chunk = input.substring(i, end);
+			int length = output.length();
+			int written = parser.feedText(chunk, end == input.length(), output);
+			assertEquals(output.length() - length, written);
+			bufferParser.feedText(chunk, end == input.length(), buffer);
+		}
+		assertEquals(input, output.toString());
+		assertEquals(input, buffer.flip().toString());
+		assertEquals(2, results.size());
+	}
+
+	@Test
+	void testByteInput() {
+		String input = "Résumé ```json\n{\"name\":\"ж€\",\"emoji\":\"😀\"}\n``` then {bad é} and [\"€\", 1] 😀";
+		byte[] utf8 = input.getBytes(StandardCharsets.UTF_8);
+		List<String> expected = new ArrayList<>();
+		StreamingJsonParser textParser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		textParser.consume(node -> expected.add(node.toString()));
+		assertEquals(input, textParser.feedText(input, true));
+		assertEquals(2, expected.size());
+
+		for (int chunkSize : new int[] { utf8.length, 7, 1 }) {
+			StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+			List<String> results = new ArrayList<>();
+			parser.consume(node -> results.add(node.toString()));
+			StringBuilder output = new StringBuilder();
+			int count = 0;
+			for (int i = 0; i < utf8.length; i += chunkSize) {
+				int end = Math.min(utf8.length, i + chunkSize);
+				ByteBuffer slice = chunkSize == 7 ? ByteBuffer.allocateDirect(end - i).put(utf8, i, end - i).flip()
+						: ByteBuffer.wrap(utf8, i, end - i);
+				count += parser.feedBytes(slice, end == utf8.length, output);
+				assertFalse(slice.hasRemaining());
+			}
+			assertEquals(input, output.toString());
+			assertEquals(input.length(), count);
+			assertEquals(expected, results);
+		}
+
+		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		List<String> results = new ArrayList<>();
+		parser.consume(node -> results.add(node.toString()));
+		parser.feedBytes(DefaultDataBufferFactory.sharedInstance.wrap(utf8), true, null);
+		assertEquals(expected, results);
+	}
+
+	record Call(String name, Map<String, Object> arguments) {}
+
+	@Test
+	void testInputSwitchInsideCandidate() {
+		for (boolean requiresOutput : new boolean[] { true, false }) {
+			StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, requiresOutput);
+			List<JsonNode> results = new ArrayList<>();
+			parser.consume(results::add);
+			parser.feedBytes(ByteBuffer.wrap("text {\"a\":".getBytes(StandardCharsets.UTF_8)), false, null);
+			assertThrows(IllegalStateException.class, () -> parser.feedText("1}", false));
+
+			// between candidates the input may switch
+			StreamingJsonParser between = new StreamingJsonParser(jsonFactory, objectMapper, requiresOutput);
+			between.consume(results::add);
+			between.feedBytes(ByteBuffer.wrap("{\"a\":1} ".getBytes(StandardCharsets.UTF_8)), false, null);
+			between.feedText("{\"b\":2}", true);
+			assertEquals(2, results.size());
+		}
+	}
+
+	@Test
+	void testTypedConsumer() {
+		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		List<Call> results = new ArrayList<>();
+		parser.consume(objectMapper.readerFor(Call.class), (Call call) -> results.add(call));
+
+		String input = "Call [1, 2] then {\"name\":\"search\",\"arguments\":{\"query\":\"json\",\"limit\":10}} done";
+		String output = parser.feedText(input, true);
+
+		// the array can't be bound to Call and is skipped
+		assertEquals(1, results.size());
+		assertEquals("search", results.get(0).name());
+		assertEquals(Map.of("query", "json", "limit", 10), results.get(0).arguments());
+		assertEquals(input, output);
+	}
+
+	@Test
+	void testTypedConsumerOfEachElement() {
+		String input = "Calls [{\"name\":\"a\",\"arguments\":{}}, {\"name\":\"b\",\"arguments\":\"x\"}, 3,"
+				+ " {\"name\":\"c\",\"arguments\":{\"d\":[1, {\"e\":2}]}}] and {\"name\":\"f\",\"arguments\":{}} done";
+		for (int chunkSize : new int[] { input.length(), 4, 1 }) {
+			StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+			List<String> results = new ArrayList<>();
+			parser.consumeEach(objectMapper.readerFor(Call.class), (Call call) -> results.add(call.name()));
+			for (int i = 0; i < input.length(); i += chunkSize) {
+				int end = Math.min(input.length(), i + chunkSize);
+				parser.feedText(input.substring(i, end), end == input.length());
+			}
+			// the elements which can't be bound are skipped, not the array
+			assertEquals(List.of("a", "c", "f"), results);
+		}
+	}
+
+	@Test
+	void testPartialSnapshots() {
+		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		List<String> partials = new ArrayList<>();
+		List<JsonNode> results = new ArrayList<>();
+		parser.consumePartial(objectMapper.readerFor(JsonNode.class), (JsonNode node) -> partials.add(node.toString()));
+		parser.consume(results::add);
+
+		String[] chunks = { "Person: {\"name\":\"Ann\",\"educ", "ation\":[{\"school\":\"A\",\"year\":1990},",
+				"{\"school\":\"B\",", "\"year\":1995}],\"age\":4", "2} done" };
+		StringBuilder output = new StringBuilder();
+		for (String chunk : chunks) {
+			output.append(parser.feedText(chunk));
+		}
+
+		assertEquals(List.of(
+				"{\"name\":\"Ann\"}",
+				"{\"name\":\"Ann\",\"education\":[{\"school\":\"A\",\"year\":1990}]}",
+				"{\"name\":\"Ann\",\"education\":[{\"school\":\"A\",\"year\":1990},{\"school\":\"B\",\"year\":1995}]}"),
+				partials);
+		assertEquals(1, results.size());
+		assertEquals(42, results.get(0).get("age").asInt());
+		assertEquals(String.join("", chunks), output.toString());
+	}
+
+	@Test
+	void testStreamElements() {
+		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		parser.streamElements(true);
+		List<String> results = new ArrayList<>();
+		parser.consume(node -> results.add(node.toString()));
+
+		assertEquals("Items: ", parser.feedText("Items: [{\"a\":1},"));
+		assertEquals(List.of("{\"a\":1}"), results);
+		parser.feedText(" [2, 3], \"x\"]\n{\"b\":2}\n");
+		assertEquals(List.of("{\"a\":1}", "[2,3]", "\"x\"", "{\"b\":2}"), results);
+
+		// elements before an error are not replayed
+		results.clear();
+		parser.feedText("[{\"c\":3}, oops {\"d\":4}]", true);
+		assertEquals(List.of("{\"c\":3}", "{\"d\":4}"), results);
+	}
+
+	@Test
+	void testLimitsAbortCandidate() {
+		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true,
+				new StreamingJsonParser.Limits(64L, 3, 8));
+		List<JsonNode> results = new ArrayList<>();
+		parser.consume(results::add);
+		long aborted = ParserMetrics.abortedCandidates();
+
+		// too deep, the inner objects are not parsed as separate candidates
+		String deep = "a {\"b\":{\"c\":{\"d\":{\"e\":1}}}} z ";
+		assertEquals(deep, parser.feedText(deep));
+		// too many tokens, split between chunks
+		String tokens = "[1,2,3,4,5,6,7,8,9] ";
+		assertEquals("", parser.feedText(tokens.substring(0, 4)));
+		assertEquals(tokens, parser.feedText(tokens.substring(4)));
+		// too many bytes, never closed
+		String unclosed = "{\"text\":\"" + "x".repeat(100);
+		assertEquals(unclosed, parser.feedText(unclosed));
+		assertEquals(" {\"ok\":true}", parser.feedText("\"} {\"ok\":true}").substring(2));
+
+		assertEquals(1, results.size());
+		assertTrue(results.get(0).get("ok").asBoolean());
+		assertEquals(aborted + 3, ParserMetrics.abortedCandidates());
+	}
+
+	@Test
+	void testLenient() {
+		String input = "Call {'name': 'ls', arguments: {path: '/tmp/{x}', recursive: True, filter: None,"
+				+ " 'it\\'s': [False, 1,], /* note */ 'q': \"a'b\"}} and {\"bad\": True} done";
+		for (int chunkSize : new int[] { input.length(), 5, 1 }) {
+			StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+			parser.lenient(true);
+			List<String> results = new ArrayList<>();
+			parser.consume(node -> results.add(node.toString()));
+			StringBuilder output = new StringBuilder();
+			for (int i = 0; i < input.length(); i += chunkSize) {
+				int end = Math.min(input.length(), i + chunkSize);
+				output.append(parser.feedText(input.substring(i, end), end == input.length()));
+			}
+			// the original text is returned, not the rewritten literals
+			assertEquals(input, output.toString());
+			assertEquals(List.of(
+					"{\"name\":\"ls\",\"arguments\":{\"path\":\"/tmp/{x}\",\"recursive\":true,\"filter\":null,"
+							+ "\"it's\":[false,1],\"q\":\"a'b\"}}",
+					"{\"bad\":true}"), results);
+		}
+
+		// strict by default
+		StreamingJsonParser strict = new StreamingJsonParser(jsonFactory, objectMapper, true);
+		List<JsonNode> results = new ArrayList<>();
+		strict.consume(results::add);
+		strict.feedText("{'a': True}", true);
+		assertTrue(results.isEmpty());
+	}
+
+	@Test
+	void testLenientKeysNotRewritten() {
+		// keys after a ',' of an object start like Python literals, a ',' of an array is followed by values
+		String input = "{a: 1, Name: True, Total: [None, False], Nonexistent: {Flag: None}, 'x': [{Nested: 1}, True]}";
+		for (int chunkSize : new int[] { input.length(), 3, 1 }) {
+			StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+			parser.lenient(true);
+			List<String> results = new ArrayList<>();
+			parser.consume(node -> results.add(node.toString()));
+			for (int i = 0; i < input.length(); i += chunkSize) {
+				int end = Math.min(input.length(), i + chunkSize);
+				parser.feedText(input.substring(i, end), end == input.length());
+			}
+			assertEquals(List.of("{\"a\":1,\"Name\":true,\"Total\":[null,false],\"Nonexistent\":{\"Flag\":null},"
+					+ "\"x\":[{\"Nested\":1},true]}"), results);
+		}
+	}
+
+	@Test
+	void testErrorRecoveryIsLinear() {
+		String[] adversarial = {
+				"[".repeat(200) + "x ",
+				"{\"a\":".repeat(100) + "x ",
+				"if (a[i] > 0) { map.put(\"k\", new int[]{1, 2}); } else { return {x: [y]}; }\n",
+				"[[1, 2], [3, 4], {\"k\": [5]}, oops] " };
+		for (String unit : adversarial) {
+			long[] parsed = new long[2];
+			int[] repeats = { 50, 200 };
+			for (int r = 0; r < repeats.length; r++) {
+				String input = unit.repeat(repeats[r]);
+				StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
+				long bytes = ParserMetrics.parsedBytes();
+				for (int i = 0; i < input.length(); i += 64) {
+					assertNotNull(parser.feedText(input.substring(i, Math.min(input.length(), i + 64))));
+				}
+				parsed[r] = ParserMetrics.parsedBytes() - bytes;
+				// every char is parsed a bounded number of times
+				assertTrue(parsed[r] <= 3L * input.length(), "parsed " + parsed[r] + " bytes of " + input.length());
+			}
+			// four times the input, a quadratic recovery would parse sixteen times the bytes
+			assertTrue(parsed[1] <= 5 * parsed[0], unit.strip() + ": " + parsed[0] + " -> " + parsed[1] + " bytes parsed");
+		}
+	}
+
+	@Test
+	void testAllocationsPerObject() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+		String chunk = "text {\"name\":\"search\",\"arguments\":{\"query\":\"json\",\"limit\":10}} more text\n";
+		int objects = 20_000;
+		int[] count = new int[1];
+		StreamingJsonParser reused = new StreamingJsonParser(jsonFactory, objectMapper, false);
+		reused.consume(node -> count[0]++);
+
+		// warm up both paths before measuring
+		for (int i = 0; i < objects; i++) {
+			reused.feedText(chunk);
+			StreamingJsonParser fresh = new StreamingJsonParser(jsonFactory, objectMapper, false);
+			fresh.consume(node -> count[0]++);
+			fresh.feedText(chunk);
+		}
+
+		long threadId = Thread.currentThread().threadId();
+		long start = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < objects; i++) {
+			reused.feedText(chunk);
+		}
+		long reusedBytes = (threadBean.getThreadAllocatedBytes(threadId) - start) / objects;
+
+		start = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < objects; i++) {
+			StreamingJsonParser fresh = new StreamingJsonParser(jsonFactory, objectMapper, false);
+			fresh.consume(node -> count[0]++);
+			fresh.feedText(chunk);
+		}
+		long freshBytes = (threadBean.getThreadAllocatedBytes(threadId) - start) / objects;
+
+		String allocated = "reused parser " + reusedBytes + " bytes, new parser " + freshBytes + " bytes per object";
+		logger.info("Allocated per extracted object: {}", allocated);
+		assertEquals(objects * 4, count[0]);
+		// a new parser and its buffers cost several times the candidate itself
+		assertTrue(reusedBytes * 2 < freshBytes, allocated);
+	}
+
 	@Test
 	void testCloseResetsStopFlag() {
 		StreamingJsonParser parser = new StreamingJsonParser(jsonFactory, objectMapper, true);
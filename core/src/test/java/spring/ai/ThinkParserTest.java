@@ -1,9 +1,13 @@
 package spring.ai;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import spring.ai.agents.Agent.Event;
+import spring.ai.parser.TagParser;
 import spring.ai.parser.ThinkParser;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -411,4 +415,89 @@ public class ThinkParserTest {
         assertNull(((Event.Text)outputs.get(18)).text());
         assertTrue(outputs.get(18).isLast());
     }
+
+    @Test
+    void testLongReasoningStream() {
+        // 100k tokens of reasoning with tag-like noise, split into token sized chunks
+        String[] tokens = { " the", " value", " <", "b>", " is", " </", "th", "ink", "ing", " 42", "." };
+        int count = 100_000;
+        StringBuilder expected = new StringBuilder();
+        List<String> chunks = new ArrayList<>(count + 8);
+        chunks.add("<thi");
+        chunks.add("nk>");
+        for (int i = 0; i < count; i++) {
+            chunks.add(tokens[i % tokens.length]);
+            expected.append(tokens[i % tokens.length]);
+        }
+        chunks.add("</th");
+        chunks.add("ink>");
+        chunks.add("Answer");
+
+        ThinkParser streamParser = new ThinkParser();
+        StringBuilder thinking = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        for (String chunk : chunks) {
+            Event.Payload payload = streamParser.acceptChunk(chunk, false);
+            String payloadText = ((Event.WithText) payload).text();
+            if (payloadText != null) {
+                (payload instanceof Event.Thinking ? thinking : text).append(payloadText);
+            }
+        }
+        Event.Payload last = streamParser.acceptChunk("", true);
+        assertNull(((Event.WithText) last).text());
+        assertEquals(expected.toString(), thinking.toString());
+        assertEquals("Answer", text.toString());
+    }
+
+    @Test
+    void testMultipleTags() {
+        TagParser tagParser = new TagParser(List.of(
+                TagParser.Tag.THINK,
+                new TagParser.Tag("<reasoning>", "</reasoning>", TagParser.Type.THINKING),
+                new TagParser.Tag("<answer>", "</answer>", TagParser.Type.TEXT),
+                new TagParser.Tag("<tool_call>", "</tool_call>", TagParser.Type.TOOL_CALL),
+                new TagParser.Tag("<|channel|>analysis<|message|>", "<|end|>", TagParser.Type.THINKING)));
+        String input = "A<reasoning>r1 <think> r2</reasoning><answer>ans <b>wer</b></answer>"
+                + "<tool_call>{\"name\":\"ls\"}</tool_call><|channel|>analysis<|message|>h</answer><|end|>é<tool";
+        StringBuilder thinking = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < input.length(); i++) {
+            // a chunk emits up to the next tag, empty chunks emit the rest
+            for (String chunk : new String[] { String.valueOf(input.charAt(i)), "", "" }) {
+                Event.Payload payload = tagParser.acceptChunk(chunk, false);
+                String payloadText = ((Event.WithText) payload).text();
+                if (payloadText != null) {
+                    if (payload instanceof Event.Thinking) {
+                        thinking.append(payloadText);
+                    } else {
+                        text.append(payloadText);
+                        texts.add(payloadText);
+                    }
+                }
+                assertFalse(payload instanceof Event.Text && payload.isLast());
+            }
+        }
+        Event.Payload last = tagParser.flush();
+        assertEquals("<tool", ((Event.Text) last).text());
+        assertEquals("r1 <think> r2h</answer>", thinking.toString());
+        assertEquals("Aans <b>wer</b>{\"name\":\"ls\"}é", text.toString());
+        // the tool call is emitted whole
+        assertTrue(texts.contains("{\"name\":\"ls\"}"));
+    }
+
+    @Test
+    void testNewParserHasOwnState() {
+        ThinkParser shared = new ThinkParser();
+        TagParser first = shared.newParser();
+        TagParser second = shared.newParser();
+        // two streams interleaved chunk by chunk
+        assertNull(((Event.WithText) first.acceptChunk("<thi", false)).text());
+        assertEquals("plain ", ((Event.Text) second.acceptChunk("plain <", false)).text());
+        assertEquals("deep", ((Event.Thinking) first.acceptChunk("nk>deep", false)).text());
+        assertEquals("<text", ((Event.Text) second.acceptChunk("text", false)).text());
+        Event.Payload firstLast = first.flush();
+        assertTrue(firstLast instanceof Event.Thinking && firstLast.isLast());
+        assertTrue(second.flush() instanceof Event.Text);
+    }
 }
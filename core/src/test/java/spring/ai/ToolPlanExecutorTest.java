@@ -0,0 +1,138 @@
+package spring.ai;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Agent.Event.FuncCall;
+import spring.ai.agents.Agent.Event.FuncResult;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.Agent.Event.Text;
+import spring.ai.agents.AgentConfig.ToolCallConfig;
+import spring.ai.agents.base.BaseToolCallParser;
+import spring.ai.agents.base.BaseToolCallbackHandler;
+import spring.ai.agents.base.ToolPlanExecutor;
+import spring.ai.parser.StreamingJsonParser.Limits;
+import spring.ai.schema.SchemaFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ToolPlanExecutorTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static FuncCall call(String id, Map<String, Object> arguments) {
+        return new FuncCall(id, "tool", arguments);
+    }
+
+    private static List<String> results(List<FuncResult> results) {
+        return results.stream().map(FuncResult::result).toList();
+    }
+
+    @Test
+    void testDependentCallsGetResults() {
+        var started = new ConcurrentHashMap<String, Long>();
+        var executor = new ToolPlanExecutor(call -> {
+            started.put(call.id(), System.nanoTime());
+            var input = call.arguments().get("input");
+            return Mono.delay(Duration.ofMillis(200)).map(i -> input instanceof String text ? "\"" + text + "!\"" : String.valueOf(input));
+        }, mapper, 4);
+        var plan = List.of(
+            call("c", Map.of("input", "${a} and ${b}")),
+            call("a", Map.of("input", "x")),
+            call("b", Map.of("input", "y")),
+            call("d", Map.of("input", "${c}")),
+            call("e", Map.of("input", "${unknown}")));
+        var results = executor.execute(plan).collectList().block();
+
+        // in the order of the plan, string results are substituted as text
+        assertEquals(List.of("\"x! and y!!\"", "\"x!\"", "\"y!\"", "\"x! and y!!!\"", "\"${unknown}!\""), results(results));
+        // independent calls start together, dependent ones after their references
+        assertTrue(Math.abs(started.get("a") - started.get("b")) < Duration.ofMillis(150).toNanos());
+        assertTrue(started.get("c") - started.get("a") >= Duration.ofMillis(180).toNanos());
+    }
+
+    @Test
+    void testFailedCallSkipsDependents() {
+        var executor = new ToolPlanExecutor(call -> "fail".equals(call.arguments().get("input"))
+            ? Mono.error(new IllegalStateException("boom")) : Mono.just("\"ok\""), mapper, 2);
+        var plan = List.of(
+            call("a", Map.of("input", "fail")),
+            call("b", Map.of("input", "${a}")),
+            call("c", Map.of("input", "x")),
+            call("f", Map.of("input", "${d}")),
+            call("d", Map.of("input", "${e}")),
+            call("e", Map.of("input", "${d}")));
+        var results = executor.execute(plan).collectList().block();
+
+        assertEquals("Error: boom", results.get(0).result());
+        assertEquals("Error: Skipped, a failed", results.get(1).result());
+        assertEquals("\"ok\"", results.get(2).result());
+        // only the calls on the cycle are cyclic, a call depending on them fails with them
+        assertEquals("Error: Skipped, d failed", results.get(3).result());
+        assertEquals("Error: Cyclic reference to e", results.get(4).result());
+        assertEquals("Error: Cyclic reference to d", results.get(5).result());
+    }
+
+    @Test
+    void testDuplicateIdGetsError() {
+        var executor = new ToolPlanExecutor(call -> Mono.just("\"" + call.arguments().get("input") + "\""), mapper, 2);
+        var plan = List.of(
+            call("a", Map.of("input", "x")),
+            call("a", Map.of("input", "y")),
+            call("b", Map.of("input", "${a}")));
+        var results = executor.execute(plan).collectList().block();
+
+        // every call of the plan gets a result, the duplicate doesn't run
+        assertEquals(3, results.size());
+        assertEquals("\"x\"", results.get(0).result());
+        assertEquals("y", results.get(1).call().arguments().get("input"));
+        assertTrue(results.get(1).result().startsWith("Error: Duplicate id a"));
+        assertEquals("\"x\"", results.get(2).result());
+    }
+
+    @Test
+    void testPlanPromptRenders() {
+        var config = new ToolCallConfig(null, SchemaFormat.JSON, null, null, null, null, null, null, null, null, true, null);
+        var prompt = config.toolsPrompt("{\"name\": \"list\"}").getText();
+
+        assertTrue(prompt.contains("{\"name\": \"list\"}"));
+        assertTrue(prompt.contains("\"${id}\""));
+        assertTrue(prompt.contains("\"uses ${call1}\""));
+    }
+
+    public static class Tools {
+        @org.springframework.ai.tool.annotation.Tool(description = "Lists the files of a directory")
+        public Mono<List<String>> list(String directory) {
+            return Mono.just(List.of(directory + "/a.txt", directory + "/b.txt"));
+        }
+
+        @org.springframework.ai.tool.annotation.Tool(description = "Counts the files")
+        public Mono<Integer> count(List<String> files) {
+            return Mono.just(files.size());
+        }
+    }
+
+    @Test
+    void testPlanInOneTurn() {
+        var config = new ToolCallConfig(null, SchemaFormat.JSON, null, null, null, null, null, null, null, null, true, null);
+        var handler = new BaseToolCallbackHandler(new Tools(), new BaseToolCallParser(mapper, Limits.DEFAULT, false, true, true), mapper, config);
+        var turn = "[{\"id\": \"ls\", \"name\": \"list\", \"arguments\": {\"directory\": \"/tmp\"}},"
+            + " {\"id\": \"n\", \"name\": \"count\", \"arguments\": {\"files\": \"${ls}\"}}]";
+        List<Payload> payloads = handler.handle(Flux.<Payload>just(new Text(turn.substring(0, 40), false), new Text(turn.substring(40), true)))
+            .collectList().block();
+
+        var results = payloads.stream().filter(p -> p instanceof FuncResult).map(p -> (FuncResult) p).toList();
+        assertEquals(2, results.size());
+        assertEquals("ls", results.get(0).call().id());
+        // a whole reference is substituted by the JSON value of the result
+        assertEquals("2", results.get(1).result());
+    }
+}
@@ -0,0 +1,106 @@
+package spring.ai;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Mono;
+import spring.ai.agents.Utils;
+import spring.ai.agents.base.BaseAgent;
+import spring.ai.schema.SchemaFormat;
+import spring.ai.tools.ReactiveToolCallbacks;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ToolRegistryTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolRegistryTest.class);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public static class Tools {
+        @Tool(description = "Executes a command")
+        public Mono<String> executeCommand(@ToolParam(description = "CLI command") String command) {
+            return Mono.just(command);
+        }
+
+        @Tool(description = "Asks the user")
+        public Mono<String> askQuestion(String question, @ToolParam(description = "Choices") List<String> answerChoices) {
+            return Mono.just(question);
+        }
+    }
+
+    @Test
+    void testInstancesShareDefinitions() {
+        var first = ReactiveToolCallbacks.from(new Tools());
+        var second = ReactiveToolCallbacks.from(new Tools());
+        assertEquals(2, first.length);
+        for (int i = 0; i < first.length; i++) {
+            assertSame(first[i].getToolDefinition(), second[i].getToolDefinition());
+        }
+        for (var format : SchemaFormat.values()) {
+            assertSame(Utils.buildToolDefinition(first[0].getToolDefinition(), mapper, format),
+                Utils.buildToolDefinition(second[0].getToolDefinition(), mapper, format));
+            assertEquals(Utils.buildToolDefinitions(first, mapper, format), Utils.buildToolDefinitions(second, mapper, format));
+        }
+        // each instance gets its own callbacks
+        assertNotSame(first[0], second[0]);
+    }
+
+    @Test
+    void testDefinitionsRenderedPerMapper() {
+        var definition = ReactiveToolCallbacks.from(new Tools())[0].getToolDefinition();
+        var other = new ObjectMapper();
+        for (var format : SchemaFormat.values()) {
+            var rendered = Utils.buildToolDefinition(definition, mapper, format);
+            // rendered once per mapper, another mapper renders its own
+            assertSame(rendered, Utils.buildToolDefinition(definition, mapper, format));
+            var renderedByOther = Utils.buildToolDefinition(definition, other, format);
+            assertNotSame(rendered, renderedByOther);
+            assertEquals(rendered, renderedByOther);
+        }
+    }
+
+    /**
+     * An agent class which is set up in this test only, so its first session is cold.
+     */
+    public static class SessionAgent extends BaseAgent {
+        SessionAgent(ChatClient client, ObjectMapper mapper) {
+            super(client, mapper);
+        }
+
+        @Tool(description = "Executes a command")
+        public Mono<String> executeCommand(@ToolParam(description = "CLI command") String command) {
+            return Mono.just(command);
+        }
+
+        @Tool(description = "Asks the user")
+        public Mono<String> askQuestion(String question, @ToolParam(description = "Choices") List<String> answerChoices) {
+            return Mono.just(question);
+        }
+    }
+
+    @Test
+    void testSessionSetup() {
+        // a session constructs its agent: the tools are bound and the tool schema is rendered
+        var client = ChatClient.create(new ScriptedChatModel((turn, prompt) -> List.of(ScriptedChatModel.last("Done"))));
+        long start = System.nanoTime();
+        new SessionAgent(client, mapper);
+        long cold = System.nanoTime() - start;
+        int sessions = 10_000;
+        start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            new SessionAgent(client, mapper);
+        }
+        long cached = (System.nanoTime() - start) / sessions;
+        // wall clock times depend on the machine, they are reported, not asserted
+        logger.info("Session setup: cold {} us, cached {} us", cold / 1000, cached / 1000.0);
+    }
+}
@@ -0,0 +1,136 @@
+package spring.ai;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.annotation.Tool;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.ai.tools.CachedTool;
+import spring.ai.tools.ReactiveMethodToolCallback;
+import spring.ai.tools.ReactiveToolCallbacks;
+import spring.ai.tools.ToolMetrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ToolResultCacheTest {
+
+    public static class Tools {
+        static final AtomicInteger reads = new AtomicInteger();
+        static final AtomicInteger writes = new AtomicInteger();
+
+        @Tool(description = "Reads a file")
+        @CachedTool(ttl = 200, unit = TimeUnit.MILLISECONDS, maxEntries = 2, shared = true)
+        public Mono<String> read(String path, Integer lines) {
+            reads.incrementAndGet();
+            if (path.equals("missing")) {
+                return Mono.error(new IllegalArgumentException("No such file"));
+            }
+            return Mono.delay(Duration.ofMillis(20)).map(i -> path + ":" + lines);
+        }
+
+        @Tool(description = "Writes a file")
+        public Mono<String> write(String path) {
+            writes.incrementAndGet();
+            return Mono.just(path);
+        }
+    }
+
+    public static class ProjectTools {
+        static final AtomicInteger reads = new AtomicInteger();
+        final String project;
+
+        ProjectTools(String project) {
+            this.project = project;
+        }
+
+        @Tool(description = "Reads a file of the project")
+        @CachedTool
+        public Mono<String> read(String path) {
+            reads.incrementAndGet();
+            return Mono.just(project + "/" + path);
+        }
+    }
+
+    private static ReactiveMethodToolCallback tool(String name) {
+        return tool(new Tools(), name);
+    }
+
+    private static ReactiveMethodToolCallback tool(Object tools, String name) {
+        for (var callback : ReactiveToolCallbacks.from(tools)) {
+            if (callback.getToolDefinition().name().equals(name)) {
+                return callback;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Test
+    void testCachedAcrossInstancesAndCoalesced() throws InterruptedException {
+        var reads = Tools.reads.get();
+        var hits = ToolMetrics.cacheHits();
+        var misses = ToolMetrics.cacheMisses();
+        // identical calls in flight share one call, the order of the arguments doesn't matter
+        var results = Flux.merge(
+                tool("read").callNonBlocking("{\"path\": \"a\", \"lines\": 3}"),
+                tool("read").callNonBlocking("{\"lines\": 3, \"path\": \"a\"}"),
+                tool("read").callNonBlocking("{\"path\": \"a\", \"lines\": 3}"))
+            .collectList().block();
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(results.get(0)::equals));
+        assertEquals(reads + 1, Tools.reads.get());
+        assertEquals(hits + 2, ToolMetrics.cacheHits());
+        assertEquals(misses + 1, ToolMetrics.cacheMisses());
+
+        assertEquals(results.get(0), tool("read").callNonBlocking("{\"path\": \"a\", \"lines\": 3}").block());
+        assertEquals(reads + 1, Tools.reads.get());
+        // expired
+        Thread.sleep(250);
+        tool("read").callNonBlocking("{\"path\": \"a\", \"lines\": 3}").block();
+        assertEquals(reads + 2, Tools.reads.get());
+    }
+
+    @Test
+    void testCachedPerInstanceUnlessShared() {
+        var reads = ProjectTools.reads.get();
+        var a = tool(new ProjectTools("a"), "read");
+        var b = tool(new ProjectTools("b"), "read");
+        assertEquals("\"a/x\"", a.callNonBlocking("{\"path\": \"x\"}").block());
+        assertEquals("\"b/x\"", b.callNonBlocking("{\"path\": \"x\"}").block());
+        assertEquals("\"a/x\"", a.callNonBlocking("{\"path\": \"x\"}").block());
+        assertEquals(reads + 2, ProjectTools.reads.get());
+    }
+
+    @Test
+    void testEvictionAndErrors() {
+        var reads = Tools.reads.get();
+        var evictions = ToolMetrics.cacheEvictions();
+        var read = tool("read");
+        read.callNonBlocking("{\"path\": \"x\"}").block();
+        read.callNonBlocking("{\"path\": \"y\"}").block();
+        read.callNonBlocking("{\"path\": \"x\"}").block();
+        // y is the least recently used
+        read.callNonBlocking("{\"path\": \"z\"}").block();
+        assertTrue(ToolMetrics.cacheEvictions() > evictions);
+        read.callNonBlocking("{\"path\": \"x\"}").block();
+        assertEquals(reads + 3, Tools.reads.get());
+        read.callNonBlocking("{\"path\": \"y\"}").block();
+        assertEquals(reads + 4, Tools.reads.get());
+
+        // failures are not cached
+        assertThrows(IllegalArgumentException.class, () -> read.callNonBlocking("{\"path\": \"missing\"}").block());
+        assertThrows(IllegalArgumentException.class, () -> read.callNonBlocking("{\"path\": \"missing\"}").block());
+        assertEquals(reads + 6, Tools.reads.get());
+    }
+
+    @Test
+    void testNotAnnotatedNotCached() {
+        var writes = Tools.writes.get();
+        tool("write").callNonBlocking("{\"path\": \"a\"}").block();
+        tool("write").callNonBlocking("{\"path\": \"a\"}").block();
+        assertEquals(writes + 2, Tools.writes.get());
+    }
+}
@@ -0,0 +1,156 @@
+package spring.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import spring.ai.agents.Agent.Event.FuncCall;
+import spring.ai.agents.Agent.Event.Payload;
+import spring.ai.agents.Agent.Event.Text;
+import spring.ai.agents.base.BaseToolCallParser;
+import spring.ai.agents.base.YamlToolCallParser;
+import spring.ai.parser.StreamingJsonParser.Limits;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class YamlToolCallParserTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private static Flux<Payload> chunks(String input, int chunkSize) {
+		List<Payload> chunks = new ArrayList<>();
+		for (int i = 0; i < input.length(); i += chunkSize) {
+			int end = Math.min(input.length(), i + chunkSize);
+			chunks.add(new Text(input.substring(i, end), end == input.length()));
+		}
+		return Flux.fromIterable(chunks);
+	}
+
+	private static String text(List<Payload> payloads) {
+		StringBuilder text = new StringBuilder();
+		payloads.stream().filter(p -> p instanceof Text t && t.text() != null).forEach(p -> text.append(((Text) p).text()));
+		return text.toString();
+	}
+
+	@Test
+	void testYamlBlockToolCall() {
+		String input = "Listing files:\n```yaml\nname: executeCommand\narguments:\n  command: ls -la # all files\n```\n";
+		for (int chunkSize : new int[] { input.length(), 4, 1 }) {
+			var parser = new YamlToolCallParser(mapper, null);
+			List<Payload> payloads = parser.parse(chunks(input, chunkSize), Set.of("executeCommand")).collectList().block();
+
+			var calls = payloads.stream().filter(p -> p instanceof FuncCall).map(p -> (FuncCall) p).toList();
+			assertEquals(1, calls.size());
+			assertEquals("executeCommand", calls.get(0).name());
+			assertEquals(Map.of("command", "ls -la"), calls.get(0).arguments());
+			assertFalse(text(payloads).contains("```"));
+		}
+	}
+
+	@Test
+	void testOtherBlocksPassThrough() {
+		String input = "```yaml\nname: unknown\narguments: {}\n```\n```python\nprint('```')\n```\n```yml\nkey: [1, 2\n``` done";
+		for (int chunkSize : new int[] { input.length(), 3, 1 }) {
+			var parser = new YamlToolCallParser(mapper, null);
+			List<Payload> payloads = parser.parse(chunks(input, chunkSize), Set.of("executeCommand")).collectList().block();
+
+			assertTrue(payloads.stream().noneMatch(p -> p instanceof FuncCall));
+			assertEquals(input, text(payloads));
+		}
+	}
+
+	@Test
+	void testUnfencedToolCall() {
+		String input = "\nname: executeCommand\narguments:\n  command: ls -la\n";
+		for (int chunkSize : new int[] { input.length(), 4, 1 }) {
+			var parser = new YamlToolCallParser(mapper, null);
+			List<Payload> payloads = parser.parse(chunks(input, chunkSize), Set.of("executeCommand")).collectList().block();
+
+			var calls = payloads.stream().filter(p -> p instanceof FuncCall).map(p -> (FuncCall) p).toList();
+			assertEquals(1, calls.size());
+			assertEquals(Map.of("command", "ls -la"), calls.get(0).arguments());
+			assertEquals("", text(payloads));
+		}
+	}
+
+	@Test
+	void testUnfencedTextPassesThrough() {
+		// a turn which starts like a tool mapping but is not one, it streams on after its first line
+		String input = "name: Bob\nHe answers in YAML." + " and more".repeat(20);
+		for (int chunkSize : new int[] { input.length(), 3, 1 }) {
+			var parser = new YamlToolCallParser(mapper, null);
+			List<Payload> payloads = parser.parse(chunks(input, chunkSize), Set.of("executeCommand")).collectList().block();
+
+			assertTrue(payloads.stream().noneMatch(p -> p instanceof FuncCall));
+			assertEquals(input, text(payloads));
+			if (chunkSize < input.length()) {
+				assertTrue(payloads.stream().anyMatch(p -> p instanceof Text t && !t.isLast() && t.text() != null && t.text().contains("Bob")));
+			}
+		}
+	}
+
+	@Test
+	void testUnfencedBlockEnds() {
+		String[] inputs = {
+				"name: executeCommand\narguments:\n  command: ls\n\nListing ```the``` files.",
+				"name: executeCommand\narguments:\n  command: ls\nListing the files.",
+				"- name: executeCommand\n  arguments:\n    command: ls\nListing the files." };
+		for (String input : inputs) {
+			for (int chunkSize : new int[] { input.length(), 4, 1 }) {
+				var parser = new YamlToolCallParser(mapper, null, Limits.DEFAULT, true);
+				List<Payload> payloads = parser.parse(chunks(input, chunkSize), Set.of("executeCommand")).collectList().block();
+
+				var calls = payloads.stream().filter(p -> p instanceof FuncCall).map(p -> (FuncCall) p).toList();
+				assertEquals(1, calls.size(), input);
+				assertEquals(Map.of("command", "ls"), calls.get(0).arguments());
+				// the text after the block is passed through
+				assertEquals(input.substring(input.indexOf("ls\n") + 3), text(payloads));
+			}
+		}
+	}
+
+	@Test
+	void testUnfencedBlockOverLimit() {
+		// 2 bytes per char, the limit is in UTF-8 bytes
+		String input = "name: executeCommand\narguments:\n  command: " + "é".repeat(40) + "\n";
+		var limits = new Limits(100L, null, null);
+		var parser = new YamlToolCallParser(mapper, null, limits, true);
+		List<Payload> payloads = parser.parse(chunks(input, 7), Set.of("executeCommand")).collectList().block();
+
+		assertTrue(payloads.stream().noneMatch(p -> p instanceof FuncCall));
+		assertEquals(input, text(payloads));
+	}
+
+	@Test
+	void testJsonDelegate() {
+		String input = "```yaml\nkey: value\n```\nCalling {\"name\": \"executeCommand\", \"arguments\": {\"command\": \"pwd\"}}";
+		var parser = new YamlToolCallParser(mapper, new BaseToolCallParser(mapper));
+		List<Payload> payloads = parser.parse(chunks(input, 5), Set.of("executeCommand")).collectList().block();
+
+		var calls = payloads.stream().filter(p -> p instanceof FuncCall).map(p -> (FuncCall) p).toList();
+		assertEquals(1, calls.size());
+		assertEquals(Map.of("command", "pwd"), calls.get(0).arguments());
+		assertTrue(text(payloads).startsWith("```yaml\nkey: value\n```\nCalling "));
+	}
+
+	@Test
+	void testConcurrentStreams() {
+		var parser = new YamlToolCallParser(mapper, new BaseToolCallParser(mapper));
+		String json = "{\"name\": \"executeCommand\", \"arguments\": {\"command\": \"pwd\"}}";
+		String yaml = "```yaml\nname: executeCommand\narguments:\n  command: ls\n```\n";
+		// one parser instance, the chunks of both streams interleave
+		var first = parser.parse(chunks(json, 3), Set.of("executeCommand"));
+		var second = parser.parse(chunks(yaml, 3), Set.of("executeCommand"));
+		List<Payload> payloads = Flux.merge(1, first.subscribeOn(reactor.core.scheduler.Schedulers.parallel()),
+				second.subscribeOn(reactor.core.scheduler.Schedulers.parallel())).collectList().block();
+
+		var commands = payloads.stream().filter(p -> p instanceof FuncCall).map(p -> ((FuncCall) p).arguments().get("command")).sorted().toList();
+		assertEquals(List.of("ls", "pwd"), commands);
+	}
+}
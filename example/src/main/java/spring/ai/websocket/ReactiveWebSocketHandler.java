@@ -58,7 +58,8 @@ public class ReactiveWebSocketHandler implements WebSocketHandler {
                             }
                             return true;
                         })
-                        .map(event -> session.textMessage(eventService.write(event))));
+                        .map(event -> session.textMessage(
+                                WebSocketFrameSerializeEvent.serialize(session.getId(), event.entity(), () -> eventService.write(event)))));
 
         // Combine input and output handling, ensuring cleanup
         return Mono.zip(input, output)
@@ -0,0 +1,54 @@
+package spring.ai.websocket;
+
+import java.util.function.Supplier;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event of an event serialized to the text of a frame for a websocket
+ * session, disabled unless the recording settings enable it. It ends when the text is
+ * handed to the session, before the frame is sent.
+ */
+@Name("spring.ai.WebSocketFrameSerialize")
+@Label("WebSocket Frame Serialize")
+@Description("An agent event serialized to the text of a websocket frame")
+@Category({"Spring AI", "WebSocket"})
+@StackTrace(false)
+@Enabled(false)
+public class WebSocketFrameSerializeEvent extends Event {
+
+    @Label("Session")
+    String session;
+
+    @Label("Event Type")
+    String eventType;
+
+    @Label("Length")
+    int length;
+
+    /**
+     * Serializes the frame text of the event in a {@link WebSocketFrameSerializeEvent}.
+     */
+    static String serialize(String session, Object entity, Supplier<String> write) {
+        var event = new WebSocketFrameSerializeEvent();
+        if (!event.isEnabled()) {
+            return write.get();
+        }
+        event.begin();
+        var text = write.get();
+        event.end();
+        if (event.shouldCommit()) {
+            event.session = session;
+            event.eventType = entity != null ? entity.getClass().getSimpleName() : null;
+            event.length = text.length();
+            event.commit();
+        }
+        return text;
+    }
+}